@@ -0,0 +1,95 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.benchmark;
+
+import com.trivir.idmunit.testconverter.converter.ExcelUtils;
+import com.trivir.idmunit.testconverter.converter.TestWorkbookGenerator;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadWorkbookBenchmark {
+
+    private static final long SEED = 42;
+
+    @Param({"100", "1000", "10000"})
+    private int rows;
+
+    @Param({"1", "10"})
+    private int connectors;
+
+    @Param({"10", "100"})
+    private int attributes;
+
+    @Param({"xlsx", "xls"})
+    private String format;
+
+    private Path workbookPath;
+
+    @Setup
+    public void setUp() throws IOException {
+        workbookPath = Files.createTempFile("benchmark", "." + format);
+        try (Workbook workbook = ExcelUtils.createWorkbook(workbookPath);
+             OutputStream outputStream = Files.newOutputStream(workbookPath)) {
+            new TestWorkbookGenerator(getShape(), SEED).writeSheet(workbook.createSheet("Benchmark"));
+            workbook.write(outputStream);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(workbookPath);
+    }
+
+    @Benchmark
+    public int loadWorkbook() throws IOException {
+        try (Workbook workbook = ExcelUtils.loadWorkbook(workbookPath)) {
+            return workbook.getNumberOfSheets();
+        }
+    }
+
+    private TestWorkbookGenerator.Shape getShape() {
+        TestWorkbookGenerator.Shape shape = new TestWorkbookGenerator.Shape();
+        shape.setNumOperations(rows);
+        shape.setNumConnectors(connectors);
+        shape.setNumAttributes(attributes);
+        return shape;
+    }
+}
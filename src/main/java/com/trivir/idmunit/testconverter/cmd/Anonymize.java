@@ -0,0 +1,175 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.cmd;
+
+import com.trivir.idmunit.testconverter.converter.ExcelUtils;
+import com.trivir.idmunit.testconverter.converter.WorkbookAnonymizer;
+import com.trivir.idmunit.testconverter.util.PicoCliValidation;
+import com.trivir.idmunit.testconverter.util.Pseudonymizer;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.fusesource.jansi.AnsiConsole;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.Properties;
+
+import static picocli.CommandLine.*;
+
+@Command(
+    name = "anonymize",
+    description = {
+        "Rewrites every value of IdMUnit test workbooks with a pseudonym of the same length and shape, keeping rows, cells, styles, formatting and formulas, so that real workbooks can be shared as performance cases.",
+        "",
+        "Section delimiter rows, Operation Config headers and the values under them, except for comments and targets, are kept so that the anonymized workbook converts with the same structure and lint messages. Sheet names are kept as well.",
+        "",
+        "Comments, hyperlink addresses and labels, and numbers, including fractions and dates, are rewritten too, and document properties such as the author, company, title and custom properties are removed. Every anonymized workbook is read back once written, and deleted if any original text value is still in it. Hyperlinks keep their scheme, such as https: or mailto:, and links to places in the workbook are kept."
+    },
+    mixinStandardHelpOptions = true,
+    versionProvider = Anonymize.ManifestVersionProvider.class,
+    showDefaultValues = true
+)
+public class Anonymize implements Runnable {
+
+    private static final int RANDOM_KEY_LENGTH = 32;
+
+    @Spec
+    Model.CommandSpec spec;
+
+    @Parameters(
+        arity = "1..*",
+        paramLabel = "WORKBOOK",
+        description = "The .xls or .xlsx workbooks to anonymize."
+    )
+    private List<Path> workbookPaths;
+
+    @Option(
+        names = "--output-dir",
+        description = "The directory to write the anonymized workbooks to, under their original file names. It is created if it does not exist.",
+        defaultValue = "anonymized"
+    )
+    private Path outputDirPath;
+
+    @Option(
+        names = "--key",
+        description = "The secret that pseudonyms are derived from. Runs with the same key give a value the same pseudonym in every workbook. Defaults to a random key for this run only."
+    )
+    private String key;
+
+    @Option(
+        names = {"--ow", "--overwrite"},
+        description = "Overwrite output files even if they already exist."
+    )
+    private boolean overwrite;
+
+    public static void main(String[] args) {
+        // To avoid warnings about Log42 not being in classpath
+        // See https://poi.apache.org/components/logging.html for more information (Specifically the Log4J SimpleLogger section)
+        Properties properties = System.getProperties();
+        properties.setProperty("log4j2.loggerContextFactory", "org.apache.logging.log4j.simple.SimpleLoggerContextFactory");
+
+        AnsiConsole.systemInstall();
+        CommandLine cmd = new CommandLine(new Anonymize());
+        int exitCode = cmd.execute(args);
+        AnsiConsole.systemUninstall();
+        System.exit(exitCode);
+    }
+
+    @Override
+    public void run() {
+        PicoCliValidation.fileExistsAndIsReadable(spec, workbookPaths.toArray(new Path[0]));
+        Path[] outputPaths = workbookPaths.stream()
+            .map(x -> outputDirPath.resolve(x.getFileName()))
+            .toArray(Path[]::new);
+        for (int i = 0; i < outputPaths.length; i++) {
+            if (Files.exists(outputPaths[i]) && isSameFile(outputPaths[i], workbookPaths.get(i))) {
+                throw new ParameterException(spec.commandLine(), String.format("Invalid file '%s': the anonymized workbook would overwrite the original.", workbookPaths.get(i)));
+            }
+        }
+        if (!overwrite) {
+            PicoCliValidation.fileDoeNotExistOrAskOverwrite(spec, outputPaths);
+        }
+        WorkbookAnonymizer anonymizer = new WorkbookAnonymizer(new Pseudonymizer(getKey()));
+        try {
+            Files.createDirectories(outputDirPath);
+            for (int i = 0; i < outputPaths.length; i++) {
+                try (Workbook workbook = ExcelUtils.loadWorkbook(workbookPaths.get(i));
+                     OutputStream outputStream = Files.newOutputStream(outputPaths[i])) {
+                    anonymizer.anonymize(workbook);
+                    workbook.write(outputStream);
+                }
+                checkNoOriginalValues(anonymizer, outputPaths[i]);
+                spec.commandLine().getErr().println(outputPaths[i]);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // The workbook is read back as written, so that values that POI keeps without any cell referring to them are found
+    // too. An anonymized workbook that still holds original values is deleted rather than left to be shared.
+    private void checkNoOriginalValues(WorkbookAnonymizer anonymizer, Path outputPath) throws IOException {
+        int numOriginalValues;
+        try (Workbook workbook = ExcelUtils.loadWorkbook(outputPath)) {
+            numOriginalValues = anonymizer.countOriginalValues(workbook);
+        }
+        if (numOriginalValues > 0) {
+            Files.delete(outputPath);
+            throw new IllegalStateException(String.format("The anonymized workbook '%s' still held %d original value(s), and was deleted.", outputPath, numOriginalValues));
+        }
+    }
+
+    private byte[] getKey() {
+        if (key != null) {
+            return key.getBytes(StandardCharsets.UTF_8);
+        }
+        byte[] randomKey = new byte[RANDOM_KEY_LENGTH];
+        new SecureRandom().nextBytes(randomKey);
+        return randomKey;
+    }
+
+    private static boolean isSameFile(Path path, Path otherPath) {
+        try {
+            return Files.isSameFile(path, otherPath);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static class ManifestVersionProvider implements CommandLine.IVersionProvider {
+        public String[] getVersion() {
+            return new String[] {Anonymize.class.getPackage().getImplementationVersion()};
+        }
+    }
+}
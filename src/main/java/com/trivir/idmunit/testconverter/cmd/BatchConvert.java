@@ -0,0 +1,333 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.cmd;
+
+import com.trivir.idmunit.testconverter.report.RunReport;
+import com.trivir.idmunit.testconverter.report.WorkbookReport;
+import com.trivir.idmunit.testconverter.report.WorkbookStatus;
+import com.trivir.idmunit.testconverter.util.ConversionScheduler;
+import com.trivir.idmunit.testconverter.util.JsonUtils;
+import com.trivir.idmunit.testconverter.util.PicoCliValidation;
+import com.trivir.idmunit.testconverter.util.ProgressDisplay;
+import lombok.Data;
+import org.fusesource.jansi.Ansi;
+import org.fusesource.jansi.AnsiConsole;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+
+import static picocli.CommandLine.*;
+
+@Command(
+    name = "batch-convert",
+    description = {
+        "Runs the excel2json and json2excel conversions listed in a job file in a single JVM, sharing one pool of workers.",
+        "",
+        "A JSON job file has the form {\"jobs\": [{\"name\": ..., \"direction\": \"excel2json\", \"testDir\": ..., \"suffix\": ..., \"logFile\": ..., \"args\": [...]}]}. A job file ending in .properties sets the same fields as job.<name>.<field>, with args separated by whitespace.",
+        "",
+        "Relative paths are resolved against the directory of the job file. The args of each job are passed on to its command, but --jobs and --heap-budget are taken from this command for all jobs."
+    },
+    mixinStandardHelpOptions = true,
+    versionProvider = BatchConvert.ManifestVersionProvider.class,
+    showDefaultValues = true,
+    exitCodeListHeading = "Exit Codes:%n",
+    exitCodeList = {
+        "0:Every workbook of every job converted.",
+        "1:At least one workbook failed to convert."
+    }
+)
+public class BatchConvert implements Callable<Integer> {
+
+    public static final int EXIT_CODE_FAILED_WORKBOOKS = 1;
+
+    private static final String PROPERTIES_JOB_PREFIX = "job.";
+
+    @Spec
+    Model.CommandSpec spec;
+
+    @Parameters(
+        index = "0",
+        paramLabel = "JOB_FILE",
+        description = "The JSON or .properties file listing the conversions to run."
+    )
+    private Path jobFilePath;
+
+    @Option(
+        names = {"-j", "--jobs"},
+        description = "The number of workbooks to convert in parallel, across all jobs. Use 0 for one per available processor.",
+        defaultValue = "0"
+    )
+    private int numJobs;
+
+    @Option(
+        names = "--heap-budget",
+        description = "The heap that the workbooks being converted at the same time may use together, either as a percentage of the maximum heap size (-Xmx) or as a size such as 1536m.",
+        defaultValue = ConversionScheduler.DEFAULT_HEAP_BUDGET,
+        converter = ConversionScheduler.HeapBudgetConverter.class
+    )
+    private long heapBudgetBytes;
+
+    @Option(
+        names = "--progress-rate",
+        paramLabel = "N",
+        description = "Redraw the progress at most N times per second. When standard error is not a terminal, progress is printed as plain lines every " + ProgressDisplay.PLAIN_INTERVAL_SECONDS + " seconds instead.",
+        defaultValue = "" + ProgressDisplay.DEFAULT_UPDATES_PER_SECOND
+    )
+    private int progressUpdatesPerSecond;
+
+    public static void main(String[] args) {
+        // To avoid warnings about Log42 not being in classpath
+        // See https://poi.apache.org/components/logging.html for more information (Specifically the Log4J SimpleLogger section)
+        Properties properties = System.getProperties();
+        properties.setProperty("log4j2.loggerContextFactory", "org.apache.logging.log4j.simple.SimpleLoggerContextFactory");
+
+        AnsiConsole.systemInstall();
+        CommandLine cmd = new CommandLine(new BatchConvert());
+        int exitCode = cmd.execute(args);
+        AnsiConsole.systemUninstall();
+        System.exit(exitCode);
+    }
+
+    @Override
+    public Integer call() {
+        PicoCliValidation.fileExistsAndIsReadable(spec, jobFilePath);
+        PicoCliValidation.notNegative(spec, "--jobs", numJobs);
+        List<BatchJob> batchJobs = readJobFile();
+        if (batchJobs.isEmpty()) {
+            throw new ParameterException(spec.commandLine(), String.format("Job file '%s' does not list any jobs.", jobFilePath));
+        }
+        List<ScheduledCommand<?>> commands = new ArrayList<>();
+        for (BatchJob batchJob : batchJobs) {
+            commands.add(createCommand(batchJob));
+        }
+        List<RunReport> reports = new ArrayList<>();
+        try {
+            List<PreparedCommand<?>> preparedCommands = new ArrayList<>();
+            List<Object> allResults;
+            // The display is closed before the commands write their logs, so that its last redraw does not end up
+            // in between their messages
+            try (ConversionScheduler scheduler = new ConversionScheduler(numJobs, heapBudgetBytes);
+                 ProgressDisplay progress = new ProgressDisplay(spec.commandLine().getErr(), System.err, progressUpdatesPerSecond)) {
+                List<ConversionScheduler.Job<Object>> allJobs = new ArrayList<>();
+                for (ScheduledCommand<?> command : commands) {
+                    PreparedCommand<?> preparedCommand = prepare(command, progress);
+                    preparedCommands.add(preparedCommand);
+                    scheduler.reserve(command.getReservedHeapBytes());
+                    allJobs.addAll(preparedCommand.getUntypedJobs());
+                }
+                allResults = scheduler.runAll(allJobs);
+            }
+            int offset = 0;
+            for (PreparedCommand<?> preparedCommand : preparedCommands) {
+                int numResults = preparedCommand.getJobs().size();
+                reports.add(preparedCommand.finish(allResults.subList(offset, offset + numResults)));
+                offset += numResults;
+            }
+        } finally {
+            commands.forEach(ScheduledCommand::close);
+        }
+        return printSummary(batchJobs, reports);
+    }
+
+    private <T> PreparedCommand<T> prepare(ScheduledCommand<T> command, ProgressDisplay progress) {
+        return new PreparedCommand<>(command, command.prepareJobs(progress));
+    }
+
+    private ScheduledCommand<?> createCommand(BatchJob batchJob) {
+        Path baseDir = jobFilePath.toAbsolutePath().getParent();
+        List<String> args = new ArrayList<>();
+        if (batchJob.getTestDir() != null) {
+            args.add("--test-dir=" + baseDir.resolve(batchJob.getTestDir()));
+        }
+        if (batchJob.getSuffix() != null) {
+            args.add("--suffix=" + batchJob.getSuffix());
+        }
+        ScheduledCommand<?> command;
+        switch (batchJob.getDirection()) {
+            case "excel2json":
+                command = new Excel2Json();
+                if (batchJob.getLogFile() != null) {
+                    args.add("--log-file=" + baseDir.resolve(batchJob.getLogFile()));
+                }
+                break;
+            case "json2excel":
+                command = new Json2Excel();
+                if (batchJob.getLogFile() != null) {
+                    throw new ParameterException(spec.commandLine(), String.format("Job '%s': json2excel does not write a log file.", batchJob.getName()));
+                }
+                break;
+            default:
+                throw new ParameterException(spec.commandLine(), String.format("Job '%s': unknown direction '%s', expected excel2json or json2excel.", batchJob.getName(), batchJob.getDirection()));
+        }
+        if (batchJob.getArgs() != null) {
+            args.addAll(batchJob.getArgs());
+        }
+        try {
+            new CommandLine(command).parseArgs(args.toArray(new String[0]));
+        } catch (ParameterException e) {
+            throw new ParameterException(spec.commandLine(), String.format("Job '%s': %s", batchJob.getName(), e.getMessage()), e);
+        }
+        return command;
+    }
+
+    private List<BatchJob> readJobFile() {
+        List<BatchJob> batchJobs;
+        try {
+            if (jobFilePath.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".properties")) {
+                batchJobs = readPropertiesJobFile();
+            } else {
+                batchJobs = JsonUtils.getMapper().readValue(jobFilePath.toFile(), BatchJobFile.class).getJobs();
+            }
+        } catch (IOException e) {
+            throw new ParameterException(spec.commandLine(), String.format("Invalid job file '%s': %s", jobFilePath, e.getMessage()), e);
+        }
+        for (int i = 0; i < batchJobs.size(); i++) {
+            BatchJob batchJob = batchJobs.get(i);
+            if (batchJob.getName() == null) {
+                batchJob.setName(String.valueOf(i + 1));
+            }
+            if (batchJob.getDirection() == null) {
+                throw new ParameterException(spec.commandLine(), String.format("Job '%s' does not specify a direction.", batchJob.getName()));
+            }
+            batchJob.setDirection(batchJob.getDirection().trim().toLowerCase(Locale.ROOT));
+        }
+        return batchJobs;
+    }
+
+    private List<BatchJob> readPropertiesJobFile() throws IOException {
+        Properties properties = new Properties();
+        try (InputStream inputStream = Files.newInputStream(jobFilePath)) {
+            properties.load(inputStream);
+        }
+        TreeSet<String> jobNames = new TreeSet<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(PROPERTIES_JOB_PREFIX) && key.indexOf('.', PROPERTIES_JOB_PREFIX.length()) > 0) {
+                jobNames.add(key.substring(PROPERTIES_JOB_PREFIX.length(), key.lastIndexOf('.')));
+            }
+        }
+        List<BatchJob> batchJobs = new ArrayList<>();
+        for (String jobName : jobNames) {
+            String prefix = PROPERTIES_JOB_PREFIX + jobName + ".";
+            BatchJob batchJob = new BatchJob();
+            batchJob.setName(jobName);
+            batchJob.setDirection(properties.getProperty(prefix + "direction"));
+            batchJob.setTestDir(properties.getProperty(prefix + "testDir"));
+            batchJob.setSuffix(properties.getProperty(prefix + "suffix"));
+            batchJob.setLogFile(properties.getProperty(prefix + "logFile"));
+            String args = properties.getProperty(prefix + "args");
+            if (args != null && !args.trim().isEmpty()) {
+                batchJob.setArgs(Arrays.asList(args.trim().split("\\s+")));
+            }
+            batchJobs.add(batchJob);
+        }
+        return batchJobs;
+    }
+
+    private int printSummary(List<BatchJob> batchJobs, List<RunReport> reports) {
+        PrintWriter out = spec.commandLine().getOut();
+        out.println();
+        long totalWorkbooks = 0;
+        long totalFailed = 0;
+        long totalWithWarnings = 0;
+        for (int i = 0; i < batchJobs.size(); i++) {
+            BatchJob batchJob = batchJobs.get(i);
+            List<WorkbookReport> workbooks = reports.get(i).getWorkbooks();
+            long numFailed = workbooks.stream().filter(x -> x.getStatus() == WorkbookStatus.FAILED).count();
+            long numWithWarnings = workbooks.stream().filter(x -> x.getWarnings() > 0).count();
+            out.printf("%s (%s): %d workbook(s), %d failed, %d with warnings.%n", batchJob.getName(), batchJob.getDirection(), workbooks.size(), numFailed, numWithWarnings);
+            totalWorkbooks += workbooks.size();
+            totalFailed += numFailed;
+            totalWithWarnings += numWithWarnings;
+        }
+        String total = String.format("Total: %d job(s), %d workbook(s), %d failed, %d with warnings.", batchJobs.size(), totalWorkbooks, totalFailed, totalWithWarnings);
+        if (totalFailed > 0) {
+            out.println(Ansi.ansi().render("@|red " + total + "|@"));
+        } else if (totalWithWarnings > 0) {
+            out.println(Ansi.ansi().render("@|yellow " + total + "|@"));
+        } else {
+            out.println(total);
+        }
+        out.flush();
+        return totalFailed > 0 ? EXIT_CODE_FAILED_WORKBOOKS : 0;
+    }
+
+    @Data
+    public static class BatchJobFile {
+
+        private List<BatchJob> jobs = new ArrayList<>();
+    }
+
+    @Data
+    public static class BatchJob {
+
+        private String name;
+        private String direction;
+        private String testDir;
+        private String suffix;
+        private String logFile;
+        private List<String> args;
+    }
+
+    // Keeps the jobs of one command together with their result type until the results are handed back to it
+    @lombok.Value
+    private static class PreparedCommand<T> {
+        ScheduledCommand<T> command;
+        List<ConversionScheduler.Job<T>> jobs;
+
+        List<ConversionScheduler.Job<Object>> getUntypedJobs() {
+            List<ConversionScheduler.Job<Object>> untypedJobs = new ArrayList<>();
+            for (ConversionScheduler.Job<T> job : jobs) {
+                untypedJobs.add(new ConversionScheduler.Job<>(job.getName(), job.getEstimatedBytes(), () -> job.getTask().call()));
+            }
+            return untypedJobs;
+        }
+
+        @SuppressWarnings("unchecked")
+        RunReport finish(List<Object> results) {
+            return command.finishJobs((List<T>) results);
+        }
+    }
+
+    public static class ManifestVersionProvider implements CommandLine.IVersionProvider {
+        public String[] getVersion() {
+            return new String[] {BatchConvert.class.getPackage().getImplementationVersion()};
+        }
+    }
+}
@@ -28,30 +28,65 @@
 
 package com.trivir.idmunit.testconverter.cmd;
 
+import com.fasterxml.jackson.annotation.JsonRawValue;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.trivir.idmunit.testconverter.converter.ExcelParser;
+import com.trivir.idmunit.testconverter.converter.SheetScanBudget;
+import com.trivir.idmunit.testconverter.converter.ObjectStore;
+import com.trivir.idmunit.testconverter.converter.TestBundle;
+import com.trivir.idmunit.testconverter.converter.TestEncoding;
+import com.trivir.idmunit.testconverter.converter.TestSchema;
 import com.trivir.idmunit.testconverter.converter.ExcelUtils;
 import com.trivir.idmunit.testconverter.converter.IdmUnitTestConverterException;
 import com.trivir.idmunit.testconverter.converter.model.IdmUnitTest;
+import com.trivir.idmunit.testconverter.converter.model.SharedConnectors;
+import com.trivir.idmunit.testconverter.report.PhaseStats;
+import com.trivir.idmunit.testconverter.report.RunReport;
+import com.trivir.idmunit.testconverter.report.RunTotals;
+import com.trivir.idmunit.testconverter.report.SheetStats;
+import com.trivir.idmunit.testconverter.report.StatsSummary;
+import com.trivir.idmunit.testconverter.report.WorkbookReport;
+import com.trivir.idmunit.testconverter.report.WorkbookStats;
+import com.trivir.idmunit.testconverter.report.WorkbookStatus;
+import com.trivir.idmunit.testconverter.util.ChangedFiles;
+import com.trivir.idmunit.testconverter.util.ConversionEvents;
+import com.trivir.idmunit.testconverter.util.ConversionJournal;
+import com.trivir.idmunit.testconverter.util.ConversionScheduler;
 import com.trivir.idmunit.testconverter.util.FilesUtils;
+import com.trivir.idmunit.testconverter.util.HashUtils;
+import com.trivir.idmunit.testconverter.util.HeapSampler;
 import com.trivir.idmunit.testconverter.util.JsonUtils;
+import com.trivir.idmunit.testconverter.util.PhaseTimer;
 import com.trivir.idmunit.testconverter.util.PicoCliValidation;
-import com.trivir.idmunit.testconverter.util.ProgressBar;
+import com.trivir.idmunit.testconverter.util.ProgressDisplay;
+import com.trivir.idmunit.testconverter.util.Shard;
+import lombok.Value;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.fusesource.jansi.Ansi;
 import org.fusesource.jansi.AnsiConsole;
 import picocli.CommandLine;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -64,14 +99,19 @@ import static picocli.CommandLine.*;
     versionProvider = Excel2Json.ManifestVersionProvider.class,
     showDefaultValues = true
 )
-public class Excel2Json implements Runnable {
+public class Excel2Json implements Runnable, ScheduledCommand<Excel2Json.WorkbookResult> {
 
-    public static final String TEST_FOLDER_EXTENSION = ".idmunit";
-
-    public static final String MANIFEST_FILE_NAME = "manifest.idmunit.json";
+    public static final String MANIFEST_FILE_NAME = TestBundle.MANIFEST_FILE_NAME;
     public static final String SCHEMA_VERSION_KEY = "schemaVersion";
     public static final String ORIGINAL_FILE_EXTENSION_KEY = "workbookType";
     public static final String SHEET_ORDER_KEY = "sheets";
+    public static final String SHARED_CONNECTORS_KEY = "connectors";
+
+    public static final String NO_PROBLEMS_LOG_MESSAGE = "All tests converted with no warnings or errors.";
+    public static final String REPORT_FILE_EXTENSION = ".report.json";
+    public static final String JOURNAL_FILE_EXTENSION = ".journal";
+    public static final String STAGING_DIR_EXTENSION = ".staging";
+    public static final String STDOUT_NDJSON = "ndjson";
 
     @Spec
     Model.CommandSpec spec;
@@ -109,14 +149,165 @@ public class Excel2Json implements Runnable {
     )
     private boolean overwrite;
 
+    @Option(
+        names = "--schema-version",
+        description = "The layout of the sheet files: 1.0 writes every operation as an object, 2.0 writes the operations as a table of value rows under a header of column keys, which is several times smaller for large sheets.",
+        defaultValue = TestSchema.DEFAULT_VERSION,
+        converter = TestSchema.VersionConverter.class
+    )
+    private TestSchema schema;
+
+    @Option(
+        names = "--encoding",
+        description = "The encoding of the sheet and manifest files: json, or the binary smile or cbor, which are smaller and faster to read and write but cannot be read as text.",
+        defaultValue = TestEncoding.DEFAULT_NAME,
+        converter = TestEncoding.NameConverter.class
+    )
+    private TestEncoding encoding;
+
+    @Option(
+        names = "--bundle",
+        description = "How to store the files converted from each workbook: dir writes an .idmunit directory with a file per sheet, zip a single .idmunit.zip file, and ndjson a single gzip-compressed .idmunit.ndjson.gz file of JSON lines, which is always JSON whatever the encoding. Only directories keep the sheets of an interrupted conversion for --resume.",
+        defaultValue = TestBundle.DEFAULT_NAME,
+        converter = TestBundle.NameConverter.class
+    )
+    private TestBundle bundle;
+
+    @Option(
+        names = "--shared-connectors",
+        description = "Write the connector definitions that the sheets of a workbook repeat once, in the manifest, and have the sheets refer to them by name. A sheet keeps its own definition of a connector that differs from the shared one. The sheets of a workbook are then written once all of them are parsed, and --resume only skips whole workbooks."
+    )
+    private boolean shareConnectors;
+
+    @Option(
+        names = "--object-store",
+        paramLabel = "<dir>",
+        description = "Store every converted sheet once, in this directory, under the SHA-256 hash of its content, and only write the manifest to the .idmunit output, naming the hash of each sheet. Sheets that are the same in several workbooks are stored once, and a sheet that is already in the store is not written again. Sheets are stored the same way whatever the --bundle, JSON on a single line or the binary --encoding, so that they have the same hash. Nothing is ever removed from the store. --resume then only skips whole workbooks."
+    )
+    private Path objectStorePath;
+
     @Option(
         names = {"-l", "--lint", "--lint-only"},
         description = "Don't output any converted files, just run the converter to check for warnings and errors in the test workbooks."
     )
     private boolean lintOnly;
 
+    @Option(
+        names = "--stdout",
+        paramLabel = "<format>",
+        description = "Print every converted sheet to standard output as soon as it is parsed, instead of writing .idmunit output. The only format is " + STDOUT_NDJSON + ": one compact JSON line per sheet, with the workbook, the index of the sheet in the workbook, the sheet name, the schema version and the test."
+    )
+    private String stdoutFormat;
+
+    @Option(
+        names = "--shard",
+        paramLabel = "k/n",
+        converter = Shard.Converter.class,
+        description = "Only convert the k-th of n shards of the workbooks. Workbooks are split between shards by file size, and each shard writes its own partial log file and run report (see merge-shards)."
+    )
+    private Shard shard;
+
+    @Option(
+        names = {"-j", "--jobs"},
+        description = "The number of workbooks to convert in parallel. Use 0 for one per available processor.",
+        defaultValue = "1"
+    )
+    private int numJobs;
+
+    @Option(
+        names = "--heap-budget",
+        description = "The heap that the workbooks being converted at the same time may use together, either as a percentage of the maximum heap size (-Xmx) or as a size such as 1536m. Workbooks are converted largest first, and each waits until its estimated share of the budget is free.",
+        defaultValue = ConversionScheduler.DEFAULT_HEAP_BUDGET,
+        converter = ConversionScheduler.HeapBudgetConverter.class
+    )
+    private long heapBudgetBytes;
+
+    @Option(
+        names = "--resume",
+        description = "Continue an interrupted run: skip the workbooks and sheets that the journal records as converted, as long as the workbook has not changed since."
+    )
+    private boolean resume;
+
+    @Option(
+        names = "--journal",
+        description = "The path of the journal that records converted workbooks and sheets for --resume. Defaults to the log file path with a '" + JOURNAL_FILE_EXTENSION + "' extension."
+    )
+    private Path journalPath;
+
+    @Option(
+        names = "--changed-since",
+        paramLabel = "<rev>",
+        description = "Only convert the workbooks that changed since the given git revision, including uncommitted and untracked changes, according to the git repository containing --test-dir."
+    )
+    private String changedSinceRevision;
+
+    @Option(
+        names = "--changed-from-stdin",
+        description = "Only convert the workbooks whose paths are read from standard input, one per line, relative to the current directory. Use this to select changed workbooks from other version control systems."
+    )
+    private boolean changedFromStdin;
+
+    @Option(
+        names = "--max-sheet-rows",
+        description = "Fail a sheet with an error once more than this many rows, blank or not, have been read from it. Defaults to 0, for no limit.",
+        defaultValue = "" + SheetScanBudget.DEFAULT_MAX_ROWS
+    )
+    private int maxSheetRows;
+
+    @Option(
+        names = "--max-sheet-cells",
+        description = "Fail a sheet with an error once more than this many cells, blank or not, have been read from it. Defaults to 0, for no limit.",
+        defaultValue = "" + SheetScanBudget.DEFAULT_MAX_CELLS
+    )
+    private long maxSheetCells;
+
+    @Option(
+        names = "--max-sheet-seconds",
+        description = "Fail a sheet with an error once reading it has taken more than this many seconds. Use 0 for no limit.",
+        defaultValue = "" + SheetScanBudget.DEFAULT_MAX_SECONDS
+    )
+    private long maxSheetSeconds;
+
+    @Option(
+        names = "--max-trailing-blank-rows",
+        description = "Stop reading a sheet after this many consecutive blank rows following its last section delimiter row. Use 0 to always read to the end.",
+        defaultValue = "" + SheetScanBudget.DEFAULT_MAX_TRAILING_BLANK_ROWS
+    )
+    private int maxTrailingBlankRows;
+
+    @Option(
+        names = "--stats",
+        paramLabel = "N",
+        arity = "0..1",
+        fallbackValue = "" + StatsSummary.DEFAULT_NUM_SLOWEST_SHEETS,
+        description = "Print the time and memory spent in each phase of the conversion, the number of rows, cells and warnings, and the N slowest sheets (${FALLBACK-VALUE} if N is not given). The statistics are also added to the run report of a shard."
+    )
+    private int numSlowestSheets = -1;
+
+    @Option(
+        names = "--report",
+        paramLabel = "<path>",
+        description = "Write a JSON run report to this path, with the status, engine, duration, peak heap, input and output sizes, sheet count and problem counts of every workbook, and totals for the run."
+    )
+    private Path reportPath;
+
+    @Option(
+        names = "--progress-rate",
+        paramLabel = "N",
+        description = "Redraw the progress at most N times per second. When standard error is not a terminal, progress is printed as plain lines every " + ProgressDisplay.PLAIN_INTERVAL_SECONDS + " seconds instead.",
+        defaultValue = "" + ProgressDisplay.DEFAULT_UPDATES_PER_SECOND
+    )
+    private int progressUpdatesPerSecond;
+
+    private List<Path> allFilePaths;
     private List<Path> filePaths;
     private boolean hasAnyErrors = false;
+    private ProgressDisplay progress;
+    private ConversionJournal journal;
+    private final Map<Path, String> workbookHashes = new ConcurrentHashMap<>();
+    private long startNanos;
+    private String startTime;
+    private HeapSampler heapSampler;
 
     public static void main(String[] args) {
         // To avoid warnings about Log42 not being in classpath
@@ -133,125 +324,503 @@ public class Excel2Json implements Runnable {
 
     @Override
     public void run() {
+        try {
+            List<WorkbookResult> results;
+            try (ConversionScheduler scheduler = new ConversionScheduler(numJobs, heapBudgetBytes);
+                 ProgressDisplay progress = new ProgressDisplay(spec.commandLine().getErr(), System.err, progressUpdatesPerSecond)) {
+                results = scheduler.runAll(prepareJobs(progress));
+            }
+            finishJobs(results);
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public List<ConversionScheduler.Job<WorkbookResult>> prepareJobs(ProgressDisplay progress) {
+        this.progress = progress;
+        startNanos = System.nanoTime();
+        startTime = Instant.now().toString();
+        PicoCliValidation.directoryExistsAndIsReadable(spec, testDirPath);
+        validateStdout();
+        PicoCliValidation.notNegative(spec, "--jobs", numJobs);
+        if (isWritingFiles()) {
+            try {
+                journal = ConversionJournal.open(getJournalPath(), resume);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
         validate();
-        ExcelParser excelParser = new ExcelParser(verbose);
-        try (PrintWriter logWriter = new PrintWriter(Files.newOutputStream(logFilePath))) {
-            for (Path filePath : getFilePaths()) {
-                convertWorkbook(excelParser, filePath, logWriter);
+        if (reportPath != null) {
+            heapSampler = new HeapSampler();
+        }
+        progress.addWork(getFilePaths().size(), getFilePaths().stream().mapToLong(FilesUtils::size).sum());
+        return getFilePaths().stream().map(this::createJob).collect(Collectors.toList());
+    }
+
+    @Override
+    public RunReport finishJobs(List<WorkbookResult> results) {
+        close();
+        RunReport runReport = new RunReport();
+        runReport.setCommand(spec.name());
+        runReport.setStartTime(startTime);
+        runReport.setShard(shard == null ? null : shard.toString());
+        runReport.setTotalWorkbooks(getAllFilePaths().size());
+        Path actualLogFilePath = shard == null ? logFilePath : shard.partialFile(logFilePath, FilesUtils.getExtension(logFilePath));
+        try (PrintWriter logWriter = new PrintWriter(Files.newOutputStream(actualLogFilePath))) {
+            for (WorkbookResult result : results) {
+                runReport.getWorkbooks().add(result.getReport());
+                if (!result.getLogLines().isEmpty()) {
+                    if (hasAnyErrors) {
+                        logWriter.println();
+                    }
+                    hasAnyErrors = true;
+                    result.getLogLines().forEach(logWriter::println);
+                }
             }
             if (!hasAnyErrors) {
-                logWriter.println("All tests converted with no warnings or errors.");
+                logWriter.println(NO_PROBLEMS_LOG_MESSAGE);
             } else {
-                String errorMessage = String.format("\nAt least one of the workbooks contained problems. See the log file '%s' for more details.", logFilePath);
+                String errorMessage = String.format("\nAt least one of the workbooks contained problems. See the log file '%s' for more details.", actualLogFilePath);
                 spec.commandLine().getErr().println(Ansi.ansi().render("@|yellow " + errorMessage + "|@"));
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        long wallNanos = System.nanoTime() - startNanos;
+        runReport.setTotals(RunTotals.of(runReport.getWorkbooks(), TimeUnit.NANOSECONDS.toMillis(wallNanos)));
+        if (isStatsEnabled()) {
+            StatsSummary.print(spec.commandLine().getErr(), runReport.getWorkbooks(), wallNanos, numSlowestSheets);
+        }
+        try {
+            if (shard != null) {
+                JsonUtils.getWriter().writeValue(shard.partialFile(logFilePath, REPORT_FILE_EXTENSION).toFile(), runReport);
+            }
+            if (reportPath != null) {
+                JsonUtils.getWriter().writeValue(reportPath.toFile(), runReport);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return runReport;
+    }
+
+    @Override
+    public void close() {
+        if (heapSampler != null) {
+            heapSampler.close();
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
     }
 
     private void validate() {
-        PicoCliValidation.directoryExistsAndIsReadable(spec, testDirPath);
-        if (!lintOnly && !overwrite) {
-            Path[] pathsToCreate = getFilePaths().stream().map(this::workbookPathToIdmUnitPath).toArray(Path[]::new);
+        if (bundle == TestBundle.NDJSON && encoding != TestEncoding.JSON) {
+            throw new ParameterException(spec.commandLine(), String.format("--bundle %s is always JSON and cannot be combined with --encoding %s.", bundle.getName(), encoding.getName()));
+        }
+        if (isWritingFiles() && !overwrite) {
+            // Workbooks that are skipped on resume will not overwrite anything
+            Path[] pathsToCreate = getFilePaths().stream()
+                .filter(x -> !isCompletedInJournal(x))
+                .map(this::workbookPathToIdmUnitPath)
+                .toArray(Path[]::new);
             PicoCliValidation.fileDoeNotExistOrAskOverwrite(spec, pathsToCreate);
         }
+        if (objectStorePath != null && !isWritingFiles()) {
+            throw new ParameterException(spec.commandLine(), "--object-store cannot be combined with --lint-only or --stdout.");
+        }
     }
 
-    private List<Path> getFilePaths() {
-        if (filePaths == null) {
+    private void validateStdout() {
+        if (stdoutFormat == null) {
+            return;
+        }
+        if (!STDOUT_NDJSON.equals(stdoutFormat)) {
+            throw new ParameterException(spec.commandLine(), String.format("Unknown --stdout format '%s', expected %s.", stdoutFormat, STDOUT_NDJSON));
+        }
+        if (lintOnly || resume || shareConnectors) {
+            throw new ParameterException(spec.commandLine(), "--stdout cannot be combined with --lint-only, --resume or --shared-connectors.");
+        }
+        if (bundle != TestBundle.DIRECTORY || encoding != TestEncoding.JSON) {
+            throw new ParameterException(spec.commandLine(), "--stdout is always JSON lines and cannot be combined with --bundle or --encoding.");
+        }
+    }
+
+    private boolean isWritingFiles() {
+        return !lintOnly && stdoutFormat == null;
+    }
+
+    private Path getJournalPath() {
+        if (lintOnly && resume) {
+            throw new ParameterException(spec.commandLine(), "--resume cannot be combined with --lint-only, as linting does not write a journal.");
+        }
+        if (journalPath != null) {
+            return journalPath;
+        }
+        if (shard != null) {
+            return shard.partialFile(logFilePath, JOURNAL_FILE_EXTENSION);
+        }
+        return logFilePath.resolveSibling(FilesUtils.stripExtension(logFilePath) + JOURNAL_FILE_EXTENSION);
+    }
+
+    private String getWorkbookHash(Path workbookPath) {
+        return workbookHashes.computeIfAbsent(workbookPath, HashUtils::sha256);
+    }
+
+    private boolean isCompletedInJournal(Path workbookPath) {
+        return resume
+            && journal.isCompleted(workbookPath.getFileName().toString(), getWorkbookHash(workbookPath))
+            && Files.exists(workbookPathToIdmUnitPath(workbookPath));
+    }
+
+    private List<Path> getAllFilePaths() {
+        if (allFilePaths == null) {
+            Predicate<Path> isChanged = getChangedFiles();
             try (Stream<Path> files = Files.walk(testDirPath, 1)) {
-                filePaths = files
+                allFilePaths = files
                     .filter(Files::isRegularFile)
                     .filter(path -> path.toString().endsWith(".xls") || path.toString().endsWith(".xlsx"))
+                    .filter(isChanged)
                     .sorted(Comparator.reverseOrder())
                     .collect(Collectors.toList());
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
         }
+        return allFilePaths;
+    }
+
+    private Predicate<Path> getChangedFiles() {
+        if (changedSinceRevision != null && changedFromStdin) {
+            throw new ParameterException(spec.commandLine(), "--changed-since and --changed-from-stdin cannot be combined.");
+        }
+        try {
+            if (changedSinceRevision != null) {
+                return ChangedFiles.fromGit(testDirPath, changedSinceRevision);
+            }
+            if (changedFromStdin) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+                return ChangedFiles.fromReader(reader, Paths.get(""));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new ParameterException(spec.commandLine(), e.getMessage());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return path -> true;
+    }
+
+    private List<Path> getFilePaths() {
+        if (filePaths == null) {
+            filePaths = shard == null ? getAllFilePaths() : shard.select(getAllFilePaths(), FilesUtils::size);
+        }
         return filePaths;
     }
 
-    private void convertWorkbook(ExcelParser parser, Path workbookPath, PrintWriter logWriter) {
-        spec.commandLine().getErr().println(workbookPath.getFileName().toString());
-        boolean workbookHasErrorsYet = false;
-        List<IdmUnitTest> convertedTests = new ArrayList<>();
-        try (Workbook workbook = ExcelUtils.loadWorkbook(workbookPath)) {
-            ProgressBar progressBar = new ProgressBar(spec.commandLine().getErr(), workbook.getNumberOfSheets());
+    private ConversionScheduler.Job<WorkbookResult> createJob(Path workbookPath) {
+        String workbookName = workbookPath.getFileName().toString();
+        long estimatedBytes = ConversionScheduler.estimateWorkbookHeapBytes(workbookName, FilesUtils.size(workbookPath));
+        return new ConversionScheduler.Job<>(workbookName, estimatedBytes, () -> {
+            long jobStartNanos = System.nanoTime();
+            HeapSampler.Tracker heapTracker = heapSampler == null ? null : heapSampler.track();
+            WorkbookResult result;
+            try (ProgressDisplay.Task task = progress.start(workbookName, FilesUtils.size(workbookPath))) {
+                result = convertWorkbook(new ExcelParser(verbose, getSheetScanBudget()), workbookPath, task);
+            } finally {
+                if (heapTracker != null) {
+                    heapTracker.close();
+                }
+            }
+            result.getReport().setDurationMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - jobStartNanos));
+            if (heapTracker != null) {
+                result.getReport().setPeakHeapBytes(heapTracker.getPeakBytes());
+            }
+            return result;
+        });
+    }
+
+    private SheetScanBudget getSheetScanBudget() {
+        return new SheetScanBudget(maxSheetRows, maxSheetCells, maxSheetSeconds, maxTrailingBlankRows);
+    }
+
+    private WorkbookResult convertWorkbook(ExcelParser parser, Path workbookPath, ProgressDisplay.Task task) {
+        String workbookName = workbookPath.getFileName().toString();
+        WorkbookReport report = new WorkbookReport();
+        report.setWorkbook(workbookName);
+        report.setIndex(getAllFilePaths().indexOf(workbookPath));
+        report.setInputBytes(FilesUtils.size(workbookPath));
+        List<String> logLines = new ArrayList<>();
+        // Only resuming needs the hash before the workbook is loaded, and otherwise it is computed while loading
+        String workbookHash = resume ? getWorkbookHash(workbookPath) : null;
+        if (isCompletedInJournal(workbookPath)) {
+            int totalNumWarnings = 0;
+            for (ConversionJournal.Entry sheetEntry : journal.getCompletedSheets(workbookName, workbookHash).values()) {
+                List<String> warnings = sheetEntry.getWarnings() == null ? Collections.emptyList() : sheetEntry.getWarnings();
+                addSheetLogLines(logLines, workbookName, sheetEntry.getSheet(), warnings);
+                totalNumWarnings += warnings.size();
+            }
+            task.finish(workbookName + " Converted by a previous run, skipped.");
+            report.setStatus(WorkbookStatus.SKIPPED);
+            report.setSheets(journal.getCompletedSheets(workbookName, workbookHash).size());
+            report.setWarnings(totalNumWarnings);
+            return new WorkbookResult(report, logLines);
+        }
+        // Sheets are written to a staging directory or bundle that replaces the output once the whole workbook is
+        // converted, so an interrupted or failed conversion never leaves a half-written output behind.
+        Path testDirectoryPath = workbookPathToIdmUnitPath(workbookPath);
+        Path stagingPath = testDirectoryPath.resolveSibling(testDirectoryPath.getFileName() + STAGING_DIR_EXTENSION);
+        Map<String, ConversionJournal.Entry> resumedSheets = getResumableSheets(workbookName, workbookHash, stagingPath);
+        WorkbookStats stats = new WorkbookStats();
+        stats.setWorkbook(workbookName);
+        if (isStatsEnabled()) {
+            report.setStats(stats);
+        }
+        ConversionEvents.Recording loadEvent = ConversionEvents.begin(ConversionEvents.Type.WORKBOOK_LOAD);
+        PhaseTimer loadTimer = stats.time(PhaseStats.LOAD);
+        try (HashUtils.Sha256InputStream inputStream = HashUtils.sha256(Files.newInputStream(workbookPath));
+             Workbook workbook = ExcelUtils.loadWorkbook(workbookPath, inputStream)) {
+            if (journal != null && workbookHash == null) {
+                workbookHash = inputStream.getHash();
+            }
+            loadTimer.stop();
+            loadEvent.end(workbookName, null, 0, report.getInputBytes());
+            report.setEngine(ExcelUtils.getEngine(workbook));
+            report.setSheets(workbook.getNumberOfSheets());
+            task.setNumSheets(workbook.getNumberOfSheets());
             int totalNumWarnings = 0;
             String lastSheetName = "";
-            try {
+            List<ParsedSheet> heldSheets = new ArrayList<>();
+            try (TestBundle.Writer bundleWriter = !isWritingFiles() || shareConnectors ? null : createBundleWriter(stagingPath, resumedSheets.isEmpty(), workbookPath, workbook, SharedConnectors.NONE)) {
                 for (Sheet sheet : workbook) {
                     lastSheetName = sheet.getSheetName();
-                    convertedTests.add(parser.parseSheet(sheet));
-                    totalNumWarnings += parser.getLintMessages().getWarnings().size();
-                    String progressBarSuffix = "";
-                    if (totalNumWarnings == 1) {
-                        progressBarSuffix = "1 warning.";
-                    } else if (totalNumWarnings > 1) {
-                        progressBarSuffix = totalNumWarnings + " warnings.";
-                    }
-                    progressBar.step(Ansi.ansi().render("@|yellow " + progressBarSuffix + "|@").toString());
-                    if (parser.getLintMessages().getWarnings().size() > 0) {
-                        if (!workbookHasErrorsYet) {
-                            if (hasAnyErrors) {
-                                logWriter.println();
-                            }
-                            hasAnyErrors = true;
-                            workbookHasErrorsYet = true;
-                            logWriter.println(workbookPath.getFileName().toString());
+                    List<String> warnings;
+                    ConversionJournal.Entry resumedSheet = resumedSheets.get(sheet.getSheetName());
+                    if (resumedSheet != null) {
+                        warnings = resumedSheet.getWarnings() == null ? Collections.emptyList() : resumedSheet.getWarnings();
+                    } else if (isTranscoding(bundleWriter)) {
+                        SheetStats sheetStats = stats.addSheet(sheet.getSheetName());
+                        byte[] content = parser.transcodeSheet(sheet, sheetStats, isPrettyPrinting());
+                        warnings = parser.getLintMessages().getWarnings();
+                        sheetStats.setWarnings(warnings.size());
+                        if (stdoutFormat != null) {
+                            printSheetRecord(workbookName, workbook.getSheetIndex(sheet), sheet.getSheetName(), content, sheetStats);
+                        } else {
+                            writeSheet(bundleWriter, workbookName, workbookHash, sheet.getSheetName(), content, sheetStats, warnings);
+                        }
+                    } else {
+                        SheetStats sheetStats = stats.addSheet(sheet.getSheetName());
+                        IdmUnitTest test = parser.parseSheet(sheet, sheetStats);
+                        warnings = parser.getLintMessages().getWarnings();
+                        sheetStats.setWarnings(warnings.size());
+                        if (stdoutFormat != null) {
+                            printSheetRecord(workbookName, workbook.getSheetIndex(sheet), test, sheetStats);
+                        } else if (bundleWriter != null) {
+                            writeSheet(bundleWriter, workbookName, workbookHash, new ParsedSheet(test, sheetStats, warnings));
+                        } else if (isWritingFiles()) {
+                            // The shared connectors are only known once every sheet is parsed
+                            heldSheets.add(new ParsedSheet(test, sheetStats, warnings));
                         }
-                        logWriter.println("|-- " + sheet.getSheetName());
-                    }
-                    for (String lintWarning : parser.getLintMessages().getWarnings()) {
-                        logWriter.println("    |-- [WARN] " + lintWarning);
                     }
+                    totalNumWarnings += warnings.size();
+                    task.step(warnings.size());
+                    addSheetLogLines(logLines, workbookName, sheet.getSheetName(), warnings);
                 }
             } catch (IdmUnitTestConverterException e) {
-                if (hasAnyErrors) {
-                    logWriter.println();
+                if (logLines.isEmpty()) {
+                    logLines.add(workbookName);
+                }
+                logLines.add("|-- " + lastSheetName);
+                logLines.add("    |-- [ERROR] " + e.getMessage());
+                task.finish(Ansi.ansi().render(workbookName + " @|red Failed. Error in workbook.|@").toString());
+                FilesUtils.deleteDirectoryIfExists(stagingPath);
+                report.setStatus(WorkbookStatus.FAILED);
+                report.setWarnings(totalNumWarnings);
+                report.setErrors(1);
+                return new WorkbookResult(report, logLines);
+            }
+            if (isWritingFiles() && shareConnectors) {
+                SharedConnectors shared = SharedConnectors.of(heldSheets.stream().map(ParsedSheet::getTest).collect(Collectors.toList()));
+                try (TestBundle.Writer bundleWriter = createBundleWriter(stagingPath, true, workbookPath, workbook, shared)) {
+                    for (ParsedSheet heldSheet : heldSheets) {
+                        writeSheet(bundleWriter, workbookName, workbookHash, heldSheet);
+                    }
                 }
-                logWriter.println(workbookPath.getFileName().toString());
-                logWriter.println("|-- " + lastSheetName);
-                logWriter.println("    |-- [ERROR] " + e.getMessage());
-                progressBar.finish(Ansi.ansi().render("@|red Failed. Error in workbook.|@").toString());
-                return;
             }
+            report.setWarnings(totalNumWarnings);
+            task.finish(totalNumWarnings == 0 ? workbookName : Ansi.ansi().render(workbookName + " @|yellow " + formatWarningCount(totalNumWarnings) + "|@").toString());
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        if (lintOnly) {
-            return;
+        report.setStatus(WorkbookStatus.CONVERTED);
+        if (!isWritingFiles()) {
+            return new WorkbookResult(report, logLines);
         }
-        Path testDirectoryPath = workbookPathToIdmUnitPath(workbookPath);
         try {
-            ObjectNode manifestNode = JsonUtils.getMapper().createObjectNode();
-            manifestNode.put(SCHEMA_VERSION_KEY, "1.0");
-            if (workbookPath.toString().endsWith(".xls")) {
-                manifestNode.put(ORIGINAL_FILE_EXTENSION_KEY, "xls");
-            } else {
-                manifestNode.put(ORIGINAL_FILE_EXTENSION_KEY, "xlsx");
-            }
-            ArrayNode sheetOrderNode = JsonUtils.getMapper().createArrayNode();
-            convertedTests.forEach(x -> sheetOrderNode.add(x.getName()));
-            manifestNode.set(SHEET_ORDER_KEY, sheetOrderNode);
-            FilesUtils.deleteDirectoryIfExists(testDirectoryPath);
-            Files.createDirectory(testDirectoryPath);
-            Files.write(testDirectoryPath.resolve(MANIFEST_FILE_NAME), JsonUtils.getWriter().writeValueAsBytes(manifestNode));
-            for (IdmUnitTest test : convertedTests) {
-                Files.write(testDirectoryPath.resolve(test.getName() + ".json"), JsonUtils.getWriter().writeValueAsBytes(test));
-            }
+            FilesUtils.replaceDirectory(stagingPath, testDirectoryPath);
+            journal.recordCompleted(workbookName, workbookHash);
+            report.setOutputBytes(FilesUtils.directorySize(testDirectoryPath));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        return new WorkbookResult(report, logLines);
+    }
+
+    // Sheets that are written or printed as soon as they are parsed, in schema 1.0 JSON, go straight from their cells to
+    // the JSON, and are never built into a test
+    private boolean isTranscoding(TestBundle.Writer bundleWriter) {
+        return (bundleWriter != null || stdoutFormat != null) && schema == TestSchema.V1 && encoding == TestEncoding.JSON;
+    }
+
+    // Only the files of directory and zip bundles are pretty-printed; NDJSON lines, objects in a store and records printed
+    // to standard output are each on a single line
+    private boolean isPrettyPrinting() {
+        return stdoutFormat == null && bundle != TestBundle.NDJSON && objectStorePath == null;
+    }
+
+    private void writeSheet(TestBundle.Writer bundleWriter, String workbookName, String workbookHash, ParsedSheet sheet) throws IOException {
+        PhaseTimer serializeTimer = sheet.getSheetStats().time(PhaseStats.SERIALIZE);
+        byte[] content = bundleWriter.serialize(sheet.getTest());
+        serializeTimer.stop();
+        writeSheet(bundleWriter, workbookName, workbookHash, sheet.getTest().getName(), content, sheet.getSheetStats(), sheet.getWarnings());
+    }
+
+    private void writeSheet(TestBundle.Writer bundleWriter, String workbookName, String workbookHash, String sheetName, byte[] content, SheetStats sheetStats, List<String> warnings) throws IOException {
+        ConversionEvents.Recording jsonWriteEvent = ConversionEvents.begin(ConversionEvents.Type.JSON_WRITE);
+        PhaseTimer writeTimer = sheetStats.time(PhaseStats.WRITE);
+        bundleWriter.writeSheet(sheetName, content);
+        journal.recordSheet(workbookName, workbookHash, sheetName, warnings);
+        writeTimer.stop();
+        jsonWriteEvent.end(workbookName, sheetName, sheetStats.getRows(), content.length);
+    }
+
+    private TestBundle.Writer createBundleWriter(Path stagingPath, boolean clean, Path workbookPath, Workbook workbook, SharedConnectors shared) throws IOException {
+        if (clean) {
+            FilesUtils.deleteDirectoryIfExists(stagingPath);
+        }
+        List<String> sheetNames = new ArrayList<>();
+        workbook.forEach(sheet -> sheetNames.add(sheet.getSheetName()));
+        TestBundle.Writer bundleWriter = bundle.createWriter(stagingPath, schema, encoding, shared);
+        if (objectStorePath != null) {
+            bundleWriter = new ObjectStore(objectStorePath).createWriter(bundleWriter, stagingPath, schema, encoding, shared);
+        }
+        bundleWriter.writeManifest(createManifest(workbookPath.toString().endsWith(".xls") ? "xls" : "xlsx", sheetNames, schema, shared));
+        return bundleWriter;
+    }
+
+    public static ObjectNode createManifest(String workbookType, List<String> sheetNames, TestSchema schema, SharedConnectors shared) {
+        ObjectNode manifestNode = JsonUtils.getMapper().createObjectNode();
+        manifestNode.put(SCHEMA_VERSION_KEY, schema.getVersion());
+        manifestNode.put(ORIGINAL_FILE_EXTENSION_KEY, workbookType);
+        ArrayNode sheetOrderNode = JsonUtils.getMapper().createArrayNode();
+        sheetNames.forEach(sheetOrderNode::add);
+        manifestNode.set(SHEET_ORDER_KEY, sheetOrderNode);
+        if (!shared.isEmpty()) {
+            manifestNode.set(SHARED_CONNECTORS_KEY, JsonUtils.getMapper().valueToTree(shared.getConnectors()));
+        }
+        return manifestNode;
+    }
 
+    private boolean isStatsEnabled() {
+        return numSlowestSheets >= 0;
+    }
+
+    private void printSheetRecord(String workbookName, int sheetIndex, IdmUnitTest test, SheetStats sheetStats) throws IOException {
+        PhaseTimer serializeTimer = sheetStats.time(PhaseStats.SERIALIZE);
+        byte[] testJson = schema.writeLine(test, SharedConnectors.NONE);
+        serializeTimer.stop();
+        printSheetRecord(workbookName, sheetIndex, test.getName(), testJson, sheetStats);
+    }
+
+    private void printSheetRecord(String workbookName, int sheetIndex, String sheetName, byte[] testJson, SheetStats sheetStats) throws IOException {
+        ConversionEvents.Recording jsonWriteEvent = ConversionEvents.begin(ConversionEvents.Type.JSON_WRITE);
+        PhaseTimer serializeTimer = sheetStats.time(PhaseStats.SERIALIZE);
+        String line = JsonUtils.getMapper().writeValueAsString(new SheetRecord(workbookName, sheetIndex, sheetName, schema.getVersion(), new String(testJson, StandardCharsets.UTF_8)));
+        serializeTimer.stop();
+        PhaseTimer writeTimer = sheetStats.time(PhaseStats.WRITE);
+        PrintWriter out = spec.commandLine().getOut();
+        // Sheets of workbooks converted in parallel must not end up on the same line
+        synchronized (out) {
+            out.print(line);
+            out.print('\n');
+            out.flush();
+        }
+        writeTimer.stop();
+        jsonWriteEvent.end(workbookName, sheetName, sheetStats.getRows(), line.length());
+    }
+
+    // Sheets recorded by an interrupted run can only be reused while their files are still in the staging directory,
+    // which an object store only writes the manifest to, once the workbook is converted
+    private Map<String, ConversionJournal.Entry> getResumableSheets(String workbookName, String workbookHash, Path stagingPath) {
+        Map<String, ConversionJournal.Entry> resumableSheets = new LinkedHashMap<>();
+        if (!resume || !isWritingFiles() || !bundle.isResumable() || shareConnectors || objectStorePath != null) {
+            return resumableSheets;
+        }
+        journal.getCompletedSheets(workbookName, workbookHash).forEach((sheetName, entry) -> {
+            if (Files.isRegularFile(stagingPath.resolve(sheetName + TestBundle.SHEET_FILE_EXTENSION))) {
+                resumableSheets.put(sheetName, entry);
+            }
+        });
+        return resumableSheets;
+    }
+
+    private void addSheetLogLines(List<String> logLines, String workbookName, String sheetName, List<String> warnings) {
+        if (warnings.isEmpty()) {
+            return;
+        }
+        if (logLines.isEmpty()) {
+            logLines.add(workbookName);
+        }
+        logLines.add("|-- " + sheetName);
+        for (String lintWarning : warnings) {
+            logLines.add("    |-- [WARN] " + lintWarning);
+        }
+    }
+
+    private String formatWarningCount(int numWarnings) {
+        if (numWarnings == 1) {
+            return "1 warning.";
+        } else if (numWarnings > 1) {
+            return numWarnings + " warnings.";
+        }
+        return "";
     }
 
     private Path workbookPathToIdmUnitPath(Path workbookPath) {
         String originalFileName = workbookPath.getFileName().toString();
         String nameWithoutExtension = originalFileName.substring(0, originalFileName.lastIndexOf("."));
-        return workbookPath.resolveSibling(nameWithoutExtension + suffix + TEST_FOLDER_EXTENSION);
+        return workbookPath.resolveSibling(nameWithoutExtension + suffix + bundle.getExtension());
+    }
+
+    @Value
+    static class WorkbookResult {
+        WorkbookReport report;
+        List<String> logLines;
+    }
+
+    @Value
+    static class ParsedSheet {
+        IdmUnitTest test;
+        SheetStats sheetStats;
+        List<String> warnings;
+    }
+
+    /**
+     * A line printed by --stdout ndjson.
+     */
+    @Value
+    static class SheetRecord {
+        String workbook;
+        int sheetIndex;
+        String sheet;
+        String schemaVersion;
+        @JsonRawValue
+        String test;
     }
 
     public static class ManifestVersionProvider implements CommandLine.IVersionProvider {
@@ -0,0 +1,340 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.cmd;
+
+import com.trivir.idmunit.testconverter.converter.ExcelParser;
+import com.trivir.idmunit.testconverter.converter.SheetScanBudget;
+import com.trivir.idmunit.testconverter.converter.TestBundle;
+import com.trivir.idmunit.testconverter.converter.TestEncoding;
+import com.trivir.idmunit.testconverter.converter.TestSchema;
+import com.trivir.idmunit.testconverter.converter.TestWorkbookGenerator;
+import com.trivir.idmunit.testconverter.converter.model.IdmUnitTest;
+import com.trivir.idmunit.testconverter.converter.model.SharedConnectors;
+import com.trivir.idmunit.testconverter.util.FilesUtils;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.fusesource.jansi.AnsiConsole;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+import static picocli.CommandLine.*;
+
+@Command(
+    name = "generate-tests",
+    description = "Generates synthetic IdMUnit test workbooks or .idmunit directories of a given shape for scale testing. The same seed and shape always generate the same tests, and an .idmunit directory is what excel2json would convert the same .xlsx workbook into.",
+    mixinStandardHelpOptions = true,
+    versionProvider = GenerateTests.ManifestVersionProvider.class,
+    showDefaultValues = true
+)
+public class GenerateTests implements Runnable {
+
+    public enum Format {
+        XLSX, XLS, IDMUNIT
+    }
+
+    @Spec
+    Model.CommandSpec spec;
+
+    @Option(
+        names = "--output-dir",
+        description = "The directory to write the generated tests to. It is created if it does not exist.",
+        defaultValue = "generated"
+    )
+    private Path outputDirPath;
+
+    @Option(
+        names = "--format",
+        description = "What to generate: ${COMPLETION-CANDIDATES}.",
+        defaultValue = "xlsx"
+    )
+    private Format format;
+
+    @Option(
+        names = "--name-prefix",
+        description = "The file name of every generated workbook starts with this prefix, followed by its number.",
+        defaultValue = "Generated"
+    )
+    private String namePrefix;
+
+    @Option(
+        names = "--seed",
+        description = "The seed for the random values, targets and operations.",
+        defaultValue = "1"
+    )
+    private long seed;
+
+    @Option(
+        names = "--workbooks",
+        description = "The number of workbooks to generate.",
+        defaultValue = "1"
+    )
+    private int numWorkbooks;
+
+    @Option(
+        names = "--sheets",
+        description = "The number of test sheets in each workbook.",
+        defaultValue = "1"
+    )
+    private int numSheets;
+
+    @Option(
+        names = "--operations",
+        description = "The number of operation rows on each sheet, including comment rows.",
+        defaultValue = "100"
+    )
+    private int numOperations;
+
+    @Option(
+        names = "--connectors",
+        description = "The number of connectors defined in the Connectors Section of each sheet.",
+        defaultValue = "3"
+    )
+    private int numConnectors;
+
+    @Option(
+        names = "--inferred-targets",
+        description = "The number of targets that operations use without a row in the Connectors Section.",
+        defaultValue = "1"
+    )
+    private int numInferredTargets;
+
+    @Option(
+        names = "--attributes",
+        description = "The number of attribute columns on each sheet.",
+        defaultValue = "10"
+    )
+    private int numAttributes;
+
+    @Option(
+        names = "--comment-every",
+        description = "Make every n-th operation a comment row. Use 0 for no comment rows.",
+        defaultValue = "10"
+    )
+    private int commentEvery;
+
+    @Option(
+        names = "--formula-every",
+        description = "Set the second attribute of every n-th operation with a formula, or of the next operation after it if it is a comment row. Use 0 for no formulas.",
+        defaultValue = "50"
+    )
+    private int formulaEvery;
+
+    @Option(
+        names = "--is-critical",
+        description = "Add the optional IsCritical Operation Config header."
+    )
+    private boolean isCritical;
+
+    @Option(
+        names = "--repeat-op-range",
+        description = "Add the optional RepeatOpRange Operation Config header."
+    )
+    private boolean repeatOpRange;
+
+    @Option(
+        names = "--schema-version",
+        description = "The layout of the sheet files written for --format IDMUNIT: 1.0 writes every operation as an object, 2.0 writes the operations as a table of value rows under a header of column keys, which is several times smaller for large sheets.",
+        defaultValue = TestSchema.DEFAULT_VERSION,
+        converter = TestSchema.VersionConverter.class
+    )
+    private TestSchema schema;
+
+    @Option(
+        names = "--encoding",
+        description = "The encoding of the sheet and manifest files written for --format IDMUNIT: json, or the binary smile or cbor, which are smaller and faster to read and write but cannot be read as text.",
+        defaultValue = TestEncoding.DEFAULT_NAME,
+        converter = TestEncoding.NameConverter.class
+    )
+    private TestEncoding encoding;
+
+    @Option(
+        names = "--bundle",
+        description = "How to store the files generated for --format IDMUNIT: dir writes an .idmunit directory with a file per sheet, zip a single .idmunit.zip file, and ndjson a single gzip-compressed .idmunit.ndjson.gz file of JSON lines, which is always JSON whatever the encoding.",
+        defaultValue = TestBundle.DEFAULT_NAME,
+        converter = TestBundle.NameConverter.class
+    )
+    private TestBundle bundle;
+
+    @Option(
+        names = {"--ow", "--overwrite"},
+        description = "Overwrite output files even if they already exist."
+    )
+    private boolean overwrite;
+
+    public static void main(String[] args) {
+        // To avoid warnings about Log42 not being in classpath
+        // See https://poi.apache.org/components/logging.html for more information (Specifically the Log4J SimpleLogger section)
+        Properties properties = System.getProperties();
+        properties.setProperty("log4j2.loggerContextFactory", "org.apache.logging.log4j.simple.SimpleLoggerContextFactory");
+
+        AnsiConsole.systemInstall();
+        CommandLine cmd = new CommandLine(new GenerateTests());
+        cmd.setCaseInsensitiveEnumValuesAllowed(true);
+        int exitCode = cmd.execute(args);
+        AnsiConsole.systemUninstall();
+        System.exit(exitCode);
+    }
+
+    @Override
+    public void run() {
+        TestWorkbookGenerator.Shape shape = getShape();
+        validate(shape);
+        try {
+            Files.createDirectories(outputDirPath);
+            for (int i = 1; i <= numWorkbooks; i++) {
+                // Each workbook has its own seed, so that it does not depend on how many workbooks come before it
+                TestWorkbookGenerator generator = new TestWorkbookGenerator(shape, seed + i);
+                Path outputPath = getOutputPath(i);
+                if (format == Format.IDMUNIT) {
+                    writeIdmUnitBundle(generator, outputPath);
+                } else {
+                    writeWorkbook(generator, outputPath);
+                }
+                spec.commandLine().getErr().println(outputPath);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private TestWorkbookGenerator.Shape getShape() {
+        TestWorkbookGenerator.Shape shape = new TestWorkbookGenerator.Shape();
+        shape.setNumOperations(numOperations);
+        shape.setNumConnectors(numConnectors);
+        shape.setNumInferredTargets(numInferredTargets);
+        shape.setNumAttributes(numAttributes);
+        shape.setCommentEvery(commentEvery);
+        shape.setFormulaEvery(formulaEvery);
+        shape.setCritical(isCritical);
+        shape.setRepeatOpRange(repeatOpRange);
+        return shape;
+    }
+
+    private void validate(TestWorkbookGenerator.Shape shape) {
+        if (numWorkbooks < 1 || numSheets < 1) {
+            throw new ParameterException(spec.commandLine(), "--workbooks and --sheets must be at least 1.");
+        }
+        if (numOperations < 0 || numConnectors < 0 || numInferredTargets < 0 || commentEvery < 0 || formulaEvery < 0) {
+            throw new ParameterException(spec.commandLine(), "--operations, --connectors, --inferred-targets, --comment-every and --formula-every cannot be negative.");
+        }
+        if (numConnectors + numInferredTargets < 1) {
+            throw new ParameterException(spec.commandLine(), "At least one connector or inferred target is needed for the operations to target.");
+        }
+        if (numAttributes < 1) {
+            throw new ParameterException(spec.commandLine(), "--attributes must be at least 1, for the dn of every operation.");
+        }
+        if (format == Format.IDMUNIT && bundle == TestBundle.NDJSON && encoding != TestEncoding.JSON) {
+            throw new ParameterException(spec.commandLine(), String.format("--bundle %s is always JSON and cannot be combined with --encoding %s.", bundle.getName(), encoding.getName()));
+        }
+        // .idmunit directories are generated through .xlsx sheets
+        SpreadsheetVersion version = format == Format.XLS ? SpreadsheetVersion.EXCEL97 : SpreadsheetVersion.EXCEL2007;
+        TestWorkbookGenerator generator = new TestWorkbookGenerator(shape, seed);
+        if (generator.getNumColumns() > version.getMaxColumns()) {
+            throw new ParameterException(spec.commandLine(), String.format("%d attributes do not fit in the %d columns of an .%s sheet.", numAttributes, version.getMaxColumns(), format == Format.XLS ? "xls" : "xlsx"));
+        }
+        if (generator.getNumRows() > version.getMaxRows()) {
+            throw new ParameterException(spec.commandLine(), String.format("%d operations and %d connectors do not fit in the %d rows of an .%s sheet.", numOperations, numConnectors, version.getMaxRows(), format == Format.XLS ? "xls" : "xlsx"));
+        }
+        if (!overwrite) {
+            List<Path> existingPaths = new ArrayList<>();
+            for (int i = 1; i <= numWorkbooks; i++) {
+                if (Files.exists(getOutputPath(i))) {
+                    existingPaths.add(getOutputPath(i));
+                }
+            }
+            if (!existingPaths.isEmpty()) {
+                throw new ParameterException(spec.commandLine(), String.format("Invalid file(s) '%s': file(s) already exists and overwrite not specified.", existingPaths));
+            }
+        }
+    }
+
+    private Path getOutputPath(int workbookNum) {
+        String extension = format == Format.IDMUNIT ? bundle.getExtension() : "." + format.name().toLowerCase(Locale.ROOT);
+        return outputDirPath.resolve(String.format("%s%03d%s", namePrefix, workbookNum, extension));
+    }
+
+    private String getSheetName(int sheetNum) {
+        return String.format("Test%03d", sheetNum);
+    }
+
+    private void writeWorkbook(TestWorkbookGenerator generator, Path workbookPath) throws IOException {
+        // Rows are written in order and never read back, so .xlsx workbooks are streamed to keep huge ones out of the heap
+        Workbook workbook = format == Format.XLS ? new HSSFWorkbook() : new SXSSFWorkbook();
+        try (OutputStream outputStream = Files.newOutputStream(workbookPath)) {
+            for (int i = 1; i <= numSheets; i++) {
+                generator.writeSheet(workbook.createSheet(getSheetName(i)));
+            }
+            workbook.write(outputStream);
+        } finally {
+            if (workbook instanceof SXSSFWorkbook) {
+                ((SXSSFWorkbook) workbook).dispose();
+            }
+            workbook.close();
+        }
+    }
+
+    private void writeIdmUnitBundle(TestWorkbookGenerator generator, Path idmunitPath) throws IOException {
+        FilesUtils.deleteDirectoryIfExists(idmunitPath);
+        ExcelParser parser = new ExcelParser(false, new SheetScanBudget(0, 0, 0, 0));
+        List<String> sheetNames = new ArrayList<>();
+        for (int i = 1; i <= numSheets; i++) {
+            sheetNames.add(getSheetName(i));
+        }
+        try (TestBundle.Writer bundleWriter = bundle.createWriter(idmunitPath, schema, encoding, SharedConnectors.NONE)) {
+            bundleWriter.writeManifest(Excel2Json.createManifest("xlsx", sheetNames, schema, SharedConnectors.NONE));
+            for (String sheetName : sheetNames) {
+                // Parsing the generated sheet guarantees the same JSON as converting the generated workbook
+                try (Workbook workbook = new XSSFWorkbook()) {
+                    Sheet sheet = workbook.createSheet(sheetName);
+                    generator.writeSheet(sheet);
+                    IdmUnitTest test = parser.parseSheet(sheet);
+                    bundleWriter.writeSheet(test.getName(), bundleWriter.serialize(test));
+                }
+            }
+        }
+    }
+
+    public static class ManifestVersionProvider implements CommandLine.IVersionProvider {
+        public String[] getVersion() {
+            return new String[] {GenerateTests.class.getPackage().getImplementationVersion()};
+        }
+    }
+}
@@ -28,16 +28,39 @@
 
 package com.trivir.idmunit.testconverter.cmd;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.TextNode;
 import com.trivir.idmunit.testconverter.converter.ExcelUtils;
 import com.trivir.idmunit.testconverter.converter.ExcelWriter;
+import com.trivir.idmunit.testconverter.converter.ObjectStore;
+import com.trivir.idmunit.testconverter.converter.TestBundle;
+import com.trivir.idmunit.testconverter.converter.TestEncoding;
+import com.trivir.idmunit.testconverter.converter.TestSchema;
+import com.trivir.idmunit.testconverter.converter.model.Connector;
 import com.trivir.idmunit.testconverter.converter.model.IdmUnitTest;
+import com.trivir.idmunit.testconverter.converter.model.SharedConnectors;
+import com.trivir.idmunit.testconverter.converter.model.StringPool;
+import com.trivir.idmunit.testconverter.report.PhaseStats;
+import com.trivir.idmunit.testconverter.report.RunReport;
+import com.trivir.idmunit.testconverter.report.RunTotals;
+import com.trivir.idmunit.testconverter.report.SheetStats;
+import com.trivir.idmunit.testconverter.report.StatsSummary;
+import com.trivir.idmunit.testconverter.report.WorkbookReport;
+import com.trivir.idmunit.testconverter.report.WorkbookStats;
+import com.trivir.idmunit.testconverter.report.WorkbookStatus;
+import com.trivir.idmunit.testconverter.util.ConversionEvents;
+import com.trivir.idmunit.testconverter.util.ConversionScheduler;
+import com.trivir.idmunit.testconverter.util.FilesUtils;
+import com.trivir.idmunit.testconverter.util.HeapSampler;
 import com.trivir.idmunit.testconverter.util.JsonUtils;
+import com.trivir.idmunit.testconverter.util.PhaseTimer;
 import com.trivir.idmunit.testconverter.util.PicoCliValidation;
-import com.trivir.idmunit.testconverter.util.ProgressBar;
+import com.trivir.idmunit.testconverter.util.ProgressDisplay;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFFormulaEvaluator;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.fusesource.jansi.AnsiConsole;
 import picocli.CommandLine;
 
@@ -46,10 +69,15 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -61,7 +89,10 @@ import static picocli.CommandLine.*;
     mixinStandardHelpOptions = true,
     versionProvider = Json2Excel.ManifestVersionProvider.class
 )
-public class Json2Excel implements Runnable {
+public class Json2Excel implements Runnable, ScheduledCommand<WorkbookReport> {
+
+    // The share of the heap budget that the tests kept by the sheet cache may use
+    private static final int SHEET_CACHE_BUDGET_DIVISOR = 4;
 
     @Spec
     Model.CommandSpec spec;
@@ -86,7 +117,70 @@ public class Json2Excel implements Runnable {
     )
     private boolean overwrite;
 
+    @Option(
+        names = {"-j", "--jobs"},
+        description = "The number of workbooks to write in parallel. Use 0 for one per available processor.",
+        defaultValue = "1"
+    )
+    private int numJobs;
+
+    @Option(
+        names = "--heap-budget",
+        description = "The heap that the workbooks being written at the same time may use together, either as a percentage of the maximum heap size (-Xmx) or as a size such as 1536m. Workbooks are written largest first, and each waits until its estimated share of the budget is free. Up to a quarter of it is set aside for the sheets in an object store that several bundles refer to, so that each is read once.",
+        defaultValue = ConversionScheduler.DEFAULT_HEAP_BUDGET,
+        converter = ConversionScheduler.HeapBudgetConverter.class
+    )
+    private long heapBudgetBytes;
+
+    @Option(
+        names = "--stats",
+        paramLabel = "N",
+        arity = "0..1",
+        fallbackValue = "" + StatsSummary.DEFAULT_NUM_SLOWEST_SHEETS,
+        description = "Print the time and memory spent in each phase of the conversion, the number of rows and cells, and the N slowest sheets (${FALLBACK-VALUE} if N is not given)."
+    )
+    private int numSlowestSheets = -1;
+
+    @Option(
+        names = "--report",
+        paramLabel = "<path>",
+        description = "Write a JSON run report to this path, with the engine, duration, peak heap, input and output sizes and sheet count of every workbook, and totals for the run."
+    )
+    private Path reportPath;
+
+    @Option(
+        names = "--progress-rate",
+        paramLabel = "N",
+        description = "Redraw the progress at most N times per second. When standard output is not a terminal, progress is printed as plain lines every " + ProgressDisplay.PLAIN_INTERVAL_SECONDS + " seconds instead.",
+        defaultValue = "" + ProgressDisplay.DEFAULT_UPDATES_PER_SECOND
+    )
+    private int progressUpdatesPerSecond;
+
+    @Option(
+        names = "--stream",
+        description = "Read each sheet of schema 1.0 in two passes: the connectors and settings first, then the operations, writing each to its row as soon as it is read, so that the operations of a sheet are never all in memory. Sheets of other schema versions are read whole."
+    )
+    private boolean stream;
+
+    @Option(
+        names = "--row-window",
+        paramLabel = "N",
+        description = "Write .xlsx workbooks with the streaming SXSSF engine, keeping only the last N rows of each sheet in memory and writing the rows before them to compressed temporary files. Formulas are evaluated as their rows are written, so their saved results are wrong when they refer to rows or sheets written later, or to rows already written out of the window; Excel is told to recalculate every formula when it opens the workbook. Use 0 to keep every row in memory.",
+        defaultValue = "0"
+    )
+    private int rowWindow;
+
     private List<Path> filePaths;
+    private long startNanos;
+    private String startTime;
+    private HeapSampler heapSampler;
+    private final Map<Path, Long> inputBytes = new HashMap<>();
+    private final SheetCache sheetCache = new SheetCache();
+
+    @Override
+    public long getReservedHeapBytes() {
+        return sheetCache.getCapacityBytes();
+    }
 
     public static void main(String[] args) {
         // To avoid warnings about Log42 not being in classpath
@@ -103,55 +197,247 @@ public class Json2Excel implements Runnable {
 
     @Override
     public void run() {
+        try {
+            List<WorkbookReport> results;
+            try (ConversionScheduler scheduler = new ConversionScheduler(numJobs, heapBudgetBytes);
+                 ProgressDisplay progress = new ProgressDisplay(spec.commandLine().getOut(), System.out, progressUpdatesPerSecond)) {
+                List<ConversionScheduler.Job<WorkbookReport>> jobs = prepareJobs(progress);
+                scheduler.reserve(getReservedHeapBytes());
+                results = scheduler.runAll(jobs);
+            }
+            finishJobs(results);
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public List<ConversionScheduler.Job<WorkbookReport>> prepareJobs(ProgressDisplay progress) {
+        startNanos = System.nanoTime();
+        startTime = Instant.now().toString();
         validate();
-        ProgressBar progressBar = new ProgressBar(spec.commandLine().getOut(), getFilePaths().size());
-        for (Path idmunitDirPath : getFilePaths()) {
-            Path workbookPath = idmunitDirPathToWorkbookPath(idmunitDirPath);
-            progressBar.step(workbookPath.getFileName().toString());
-            Path manifestPath = idmunitDirPath.resolve(Excel2Json.MANIFEST_FILE_NAME);
-            try (Workbook workbook = ExcelUtils.createWorkbook(workbookPath);
-                 InputStream inputStream = Files.newInputStream(manifestPath);
-                 OutputStream outputStream = Files.newOutputStream(workbookPath)) {
-                ExcelWriter writer = new ExcelWriter(workbook);
-                ArrayNode sheetOrderNode = (ArrayNode) JsonUtils.getMapper().readTree(inputStream).get(Excel2Json.SHEET_ORDER_KEY);
-                if (sheetOrderNode == null) {
-                    throw new RuntimeException(String.format("Failed to read sheet order from '%s', for test '%s'.", Excel2Json.MANIFEST_FILE_NAME, workbookPath));
+        if (reportPath != null) {
+            heapSampler = new HeapSampler();
+        }
+        getFilePaths().forEach(this::scanBundle);
+        sheetCache.setCapacity(heapBudgetBytes / SHEET_CACHE_BUDGET_DIVISOR);
+        progress.addWork(getFilePaths().size(), getFilePaths().stream().mapToLong(inputBytes::get).sum());
+        return getFilePaths().stream()
+            .map(idmunitPath -> createJob(idmunitPath, progress))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public RunReport finishJobs(List<WorkbookReport> results) {
+        close();
+        long wallNanos = System.nanoTime() - startNanos;
+        RunReport runReport = new RunReport();
+        runReport.setCommand(spec.name());
+        runReport.setStartTime(startTime);
+        runReport.setTotalWorkbooks(results.size());
+        runReport.setTotals(RunTotals.of(results, TimeUnit.NANOSECONDS.toMillis(wallNanos)));
+        runReport.setWorkbooks(results);
+        if (numSlowestSheets >= 0) {
+            StatsSummary.print(spec.commandLine().getErr(), results, wallNanos, numSlowestSheets);
+        }
+        if (reportPath != null) {
+            try {
+                JsonUtils.getWriter().writeValue(reportPath.toFile(), runReport);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return runReport;
+    }
+
+    @Override
+    public void close() {
+        if (heapSampler != null) {
+            heapSampler.close();
+        }
+    }
+
+    private ConversionScheduler.Job<WorkbookReport> createJob(Path idmunitPath, ProgressDisplay progress) {
+        long estimatedBytes = inputBytes.get(idmunitPath) * ConversionScheduler.JSON_HEAP_FACTOR;
+        return new ConversionScheduler.Job<>(idmunitPath.getFileName().toString(), estimatedBytes, () -> {
+            long jobStartNanos = System.nanoTime();
+            HeapSampler.Tracker heapTracker = heapSampler == null ? null : heapSampler.track();
+            Path workbookPath = idmunitPathToWorkbookPath(idmunitPath);
+            WorkbookReport report = new WorkbookReport();
+            report.setWorkbook(workbookPath.getFileName().toString());
+            report.setIndex(getFilePaths().indexOf(idmunitPath));
+            report.setInputBytes(inputBytes.get(idmunitPath));
+            WorkbookStats stats = new WorkbookStats();
+            stats.setWorkbook(report.getWorkbook());
+            try (ProgressDisplay.Task task = progress.start(report.getWorkbook(), report.getInputBytes())) {
+                writeWorkbook(idmunitPath, report, stats, task);
+                task.finish(report.getWorkbook());
+            } finally {
+                if (heapTracker != null) {
+                    heapTracker.close();
                 }
-                List<String> sheetNames = new ArrayList<>();
-                for (JsonNode textNode : sheetOrderNode) {
-                    sheetNames.add(textNode.asText());
+            }
+            report.setOutputBytes(FilesUtils.size(workbookPath));
+            report.setStatus(WorkbookStatus.CONVERTED);
+            report.setDurationMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - jobStartNanos));
+            if (heapTracker != null) {
+                report.setPeakHeapBytes(heapTracker.getPeakBytes());
+            }
+            if (numSlowestSheets >= 0) {
+                report.setStats(stats);
+            }
+            return report;
+        });
+    }
+
+    private void writeWorkbook(Path idmunitPath, WorkbookReport report, WorkbookStats stats, ProgressDisplay.Task task) {
+        Path workbookPath = idmunitPathToWorkbookPath(idmunitPath);
+        try (TestBundle.Reader bundleReader = ObjectStore.openBundle(idmunitPath);
+             Workbook workbook = ExcelUtils.createWorkbook(workbookPath, rowWindow);
+             OutputStream outputStream = Files.newOutputStream(workbookPath)) {
+            try {
+                ExcelWriter writer = new ExcelWriter(workbook);
+                // The rows of a streaming workbook are gone once the window moves past them, so they are counted and
+                // their formulas evaluated as they are written instead of once every sheet is
+                boolean isStreaming = workbook instanceof SXSSFWorkbook;
+                if (isStreaming) {
+                    // Formulas are evaluated before the rows and sheets after them exist, so their results cannot be
+                    // trusted
+                    workbook.setForceFormulaRecalculation(true);
                 }
-                sheetNames.stream()
-                    .map(x -> {
-                        Path sheetJsonPath = idmunitDirPath.resolve(x + ".json");
-                        try (InputStream is = Files.newInputStream(sheetJsonPath)) {
-                            return JsonUtils.getMapper().readValue(is, IdmUnitTest.class);
-                        } catch (IOException e) {
-                            throw new RuntimeException(e);
-                        }
-                    })
-                    .forEach(writer::writeTest);
                 FormulaEvaluator evaluator = workbook.getCreationHelper().createFormulaEvaluator();
-                for (Sheet sheet : workbook) {
-                    for (Row r : sheet) {
-                        for (Cell c : r) {
-                            if (c.getCellType() == CellType.FORMULA) {
-                                evaluator.evaluateFormulaCell(c);
-                            }
+                report.setEngine(ExcelUtils.getEngine(workbook));
+                JsonNode manifestNode = readManifest(bundleReader);
+                TestSchema schema = getSchema(manifestNode, idmunitPath);
+                SharedConnectors shared = getSharedConnectors(manifestNode);
+                List<String> sheetNames = getSheetNames(manifestNode, idmunitPath);
+                StringPool stringPool = new StringPool();
+                report.setSheets(sheetNames.size());
+                task.setNumSheets(sheetNames.size());
+                for (String sheetName : sheetNames) {
+                    SheetStats sheetStats = stats.addSheet(sheetName);
+                    if (isStreaming) {
+                        writer.setRowListener(row -> evaluateRow(row, evaluator, sheetStats));
+                    }
+                    if (stream && schema.isStreamable()) {
+                        streamSheet(bundleReader, sheetName, schema, shared, stringPool, workbook, writer, stats, sheetStats);
+                    } else {
+                        PhaseTimer readTimer = sheetStats.time(PhaseStats.READ);
+                        // A sheet refers to the shared connectors of its own manifest, so only sheets without any are
+                        // the same test in every workbook that stores them as the same object
+                        String hash = shared.isEmpty() ? bundleReader.getSheetHash(sheetName) : null;
+                        IdmUnitTest test;
+                        if (hash == null) {
+                            test = readSheet(bundleReader, sheetName, schema, shared, stringPool);
+                        } else {
+                            test = sheetCache.get(hash, () -> readSheet(bundleReader, sheetName, schema, shared, stringPool));
                         }
+                        readTimer.stop();
+                        ConversionEvents.Recording sheetWriteEvent = ConversionEvents.begin(ConversionEvents.Type.SHEET_WRITE);
+                        PhaseTimer writeSheetTimer = sheetStats.time(PhaseStats.WRITE_SHEET);
+                        writer.writeTest(test);
+                        writeSheetTimer.stop();
+                        endSheetWriteEvent(sheetWriteEvent, bundleReader, workbook, stats, sheetName);
                     }
+                    task.step(0);
                 }
+                for (int i = 0; i < workbook.getNumberOfSheets() && !isStreaming; i++) {
+                    SheetStats sheetStats = stats.getSheets().get(i);
+                    ConversionEvents.Recording evaluationEvent = ConversionEvents.begin(ConversionEvents.Type.FORMULA_EVALUATION);
+                    PhaseTimer evaluateTimer = sheetStats.time(PhaseStats.EVALUATE_FORMULAS);
+                    for (Row r : workbook.getSheetAt(i)) {
+                        evaluateRow(r, evaluator, sheetStats);
+                    }
+                    evaluateTimer.stop();
+                    evaluationEvent.end(stats.getWorkbook(), sheetStats.getSheet(), sheetStats.getRows(), 0);
+                }
+                PhaseTimer saveTimer = stats.time(PhaseStats.SAVE);
                 workbook.write(outputStream);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+                saveTimer.stop();
+            } finally {
+                ExcelUtils.deleteTemporaryFiles(workbook);
             }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
     }
 
+    // The read phase only covers the first pass, as the operations are read while their rows are written
+    private void streamSheet(TestBundle.Reader bundleReader, String sheetName, TestSchema schema, SharedConnectors shared, StringPool stringPool, Workbook workbook, ExcelWriter writer, WorkbookStats stats, SheetStats sheetStats) throws IOException {
+        PhaseTimer readTimer = sheetStats.time(PhaseStats.READ);
+        IdmUnitTest header;
+        try (InputStream inputStream = bundleReader.openSheet(sheetName)) {
+            header = schema.readHeader(inputStream, shared);
+        }
+        readTimer.stop();
+        ConversionEvents.Recording sheetWriteEvent = ConversionEvents.begin(ConversionEvents.Type.SHEET_WRITE);
+        PhaseTimer writeSheetTimer = sheetStats.time(PhaseStats.WRITE_SHEET);
+        writer.startTest(header);
+        try (InputStream inputStream = bundleReader.openSheet(sheetName)) {
+            schema.readOperations(inputStream, stringPool, writer::writeOperation);
+        }
+        writer.finishTest();
+        writeSheetTimer.stop();
+        endSheetWriteEvent(sheetWriteEvent, bundleReader, workbook, stats, sheetName);
+    }
+
+    private void endSheetWriteEvent(ConversionEvents.Recording sheetWriteEvent, TestBundle.Reader bundleReader, Workbook workbook, WorkbookStats stats, String sheetName) throws IOException {
+        if (sheetWriteEvent.isRecording()) {
+            sheetWriteEvent.end(stats.getWorkbook(), sheetName, workbook.getSheet(sheetName).getPhysicalNumberOfRows(), bundleReader.getSheetSize(sheetName));
+        }
+    }
+
+    private void evaluateRow(Row row, FormulaEvaluator evaluator, SheetStats sheetStats) {
+        sheetStats.setRows(sheetStats.getRows() + 1);
+        for (Cell c : row) {
+            sheetStats.setCells(sheetStats.getCells() + 1);
+            if (c.getCellType() == CellType.FORMULA) {
+                try {
+                    evaluator.evaluateFormulaCell(c);
+                } catch (SXSSFFormulaEvaluator.RowFlushedException e) {
+                    // Refers to a row that is no longer in the window, and is left for Excel to calculate
+                }
+            }
+        }
+    }
+
+    private IdmUnitTest readSheet(TestBundle.Reader bundleReader, String sheetName, TestSchema schema, SharedConnectors shared, StringPool stringPool) throws IOException {
+        try (InputStream inputStream = bundleReader.openSheet(sheetName)) {
+            return schema.read(inputStream, shared, stringPool);
+        }
+    }
+
+    // The sheets of a bundle that are in an object store count towards its input size, and those that several bundles
+    // refer to are read once and kept until the last of them is written
+    private void scanBundle(Path idmunitPath) {
+        long bytes = FilesUtils.directorySize(idmunitPath);
+        try (TestBundle.Reader bundleReader = ObjectStore.openBundle(idmunitPath)) {
+            JsonNode manifestNode = readManifest(bundleReader);
+            // Streamed sheets are read again by every bundle that refers to them, and never kept
+            boolean isShareable = getSharedConnectors(manifestNode).isEmpty() && !(stream && getSchema(manifestNode, idmunitPath).isStreamable());
+            for (String sheetName : getSheetNames(manifestNode, idmunitPath)) {
+                String hash = bundleReader.getSheetHash(sheetName);
+                if (hash != null) {
+                    bytes += bundleReader.getSheetSize(sheetName);
+                    if (isShareable) {
+                        sheetCache.addReference(hash, bundleReader.getSheetSize(sheetName) * ConversionScheduler.JSON_HEAP_FACTOR);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        inputBytes.put(idmunitPath, bytes);
+    }
+
     private void validate() {
         PicoCliValidation.directoryExistsAndIsReadable(spec, testDirPath);
+        PicoCliValidation.notNegative(spec, "--jobs", numJobs);
+        if (rowWindow < 0) {
+            throw new ParameterException(spec.commandLine(), String.format("--row-window must be 0 or more, not %d.", rowWindow));
+        }
         if (!overwrite) {
-            Path[] pathsToCreate = getFilePaths().stream().map(this::idmunitDirPathToWorkbookPath).toArray(Path[]::new);
+            Path[] pathsToCreate = getFilePaths().stream().map(this::idmunitPathToWorkbookPath).toArray(Path[]::new);
             PicoCliValidation.fileDoeNotExistOrAskOverwrite(spec, pathsToCreate);
         }
     }
@@ -160,8 +446,7 @@ public class Json2Excel implements Runnable {
         if (filePaths == null) {
             try (Stream<Path> files = Files.walk(testDirPath, 1)) {
                 filePaths = files
-                    .filter(Files::isDirectory)
-                    .filter(path -> path.toString().endsWith(Excel2Json.TEST_FOLDER_EXTENSION))
+                    .filter(path -> TestBundle.fromPath(path) != null)
                     .sorted(Comparator.reverseOrder())
                     .collect(Collectors.toList());
             } catch (IOException e) {
@@ -171,20 +456,53 @@ public class Json2Excel implements Runnable {
         return filePaths;
     }
 
-    private Path idmunitDirPathToWorkbookPath(Path idmunitDirPath) {
-        String originalWorkbookType = getOriginalWorkbookType(idmunitDirPath);
-        String originalDirName = idmunitDirPath.getFileName().toString();
-        String nameWithoutExtension = originalDirName.substring(0, originalDirName.lastIndexOf("."));
-        return idmunitDirPath.resolveSibling(nameWithoutExtension + suffix + "." + originalWorkbookType);
+    private Path idmunitPathToWorkbookPath(Path idmunitPath) {
+        String originalWorkbookType = getOriginalWorkbookType(idmunitPath);
+        String nameWithoutExtension = TestBundle.fromPath(idmunitPath).getBaseName(idmunitPath);
+        return idmunitPath.resolveSibling(nameWithoutExtension + suffix + "." + originalWorkbookType);
     }
 
-    private String getOriginalWorkbookType(Path idmunitDirPath) {
-        Path manifestFilePath = idmunitDirPath.resolve(Excel2Json.MANIFEST_FILE_NAME);
+    private JsonNode readManifest(TestBundle.Reader bundleReader) throws IOException {
+        try (InputStream inputStream = bundleReader.openManifest()) {
+            return JsonUtils.getMapper().readTree(TestEncoding.createParser(inputStream));
+        }
+    }
+
+    private List<String> getSheetNames(JsonNode manifestNode, Path idmunitPath) {
+        ArrayNode sheetOrderNode = (ArrayNode) manifestNode.get(Excel2Json.SHEET_ORDER_KEY);
+        if (sheetOrderNode == null) {
+            throw new RuntimeException(String.format("Failed to read sheet order from '%s', for test '%s'.", Excel2Json.MANIFEST_FILE_NAME, idmunitPath));
+        }
+        List<String> sheetNames = new ArrayList<>();
+        for (JsonNode textNode : sheetOrderNode) {
+            sheetNames.add(textNode.asText());
+        }
+        return sheetNames;
+    }
+
+    private TestSchema getSchema(JsonNode manifestNode, Path idmunitPath) {
+        String version = manifestNode.path(Excel2Json.SCHEMA_VERSION_KEY).asText(TestSchema.DEFAULT_VERSION);
         try {
-            byte[] manifestContents = Files.readAllBytes(manifestFilePath);
-            TextNode workbookTypeNode = (TextNode) JsonUtils.getMapper().readTree(manifestContents).get(Excel2Json.ORIGINAL_FILE_EXTENSION_KEY);
+            return TestSchema.fromVersion(version);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException(String.format("Cannot read test '%s': %s", idmunitPath, e.getMessage()), e);
+        }
+    }
+
+    private SharedConnectors getSharedConnectors(JsonNode manifestNode) {
+        JsonNode connectorsNode = manifestNode.get(Excel2Json.SHARED_CONNECTORS_KEY);
+        if (connectorsNode == null) {
+            return SharedConnectors.NONE;
+        }
+        return new SharedConnectors(JsonUtils.getMapper().convertValue(connectorsNode, new TypeReference<List<Connector>>() {}));
+    }
+
+    private String getOriginalWorkbookType(Path idmunitPath) {
+        try (TestBundle.Reader bundleReader = TestBundle.fromPath(idmunitPath).openReader(idmunitPath);
+             InputStream inputStream = bundleReader.openManifest()) {
+            TextNode workbookTypeNode = (TextNode) JsonUtils.getMapper().readTree(TestEncoding.createParser(inputStream)).get(Excel2Json.ORIGINAL_FILE_EXTENSION_KEY);
             if (workbookTypeNode == null) {
-                throw new RuntimeException(String.format("Failed to read original workbook type from '%s' for test '%s'.", Excel2Json.MANIFEST_FILE_NAME, idmunitDirPath));
+                throw new RuntimeException(String.format("Failed to read original workbook type from '%s' for test '%s'.", Excel2Json.MANIFEST_FILE_NAME, idmunitPath));
             }
             return workbookTypeNode.asText();
         } catch (IOException e) {
@@ -192,6 +510,90 @@ public class Json2Excel implements Runnable {
         }
     }
 
+    /**
+     * Keeps the tests read from objects that several bundles refer to, so that each is read once. A test is dropped
+     * once every bundle that refers to it has taken it. The tests kept are limited by their estimated heap size, and
+     * the least recently used are dropped first to make room; a dropped test is read again by the next bundle that
+     * takes it. Two bundles that take the same test at the same time may both read it.
+     */
+    static class SheetCache {
+
+        interface Loader {
+            IdmUnitTest load() throws IOException;
+        }
+
+        private final Map<String, Integer> remainingReferences = new HashMap<>();
+        private final Map<String, Long> estimatedBytes = new HashMap<>();
+        // In order of access, least recently used first
+        private final LinkedHashMap<String, IdmUnitTest> tests = new LinkedHashMap<>(16, 0.75f, true);
+        private long capacityBytes;
+        private long usedBytes;
+
+        synchronized void addReference(String hash, long testBytes) {
+            remainingReferences.merge(hash, 1, Integer::sum);
+            estimatedBytes.put(hash, testBytes);
+        }
+
+        /**
+         * Limits the tests kept to the estimated size of all tests that more than one bundle refers to, and to at
+         * most the limit given. Must be called once every reference is added.
+         */
+        synchronized void setCapacity(long limitBytes) {
+            long sharedBytes = 0;
+            for (Map.Entry<String, Integer> entry : remainingReferences.entrySet()) {
+                if (entry.getValue() > 1) {
+                    sharedBytes += estimatedBytes.get(entry.getKey());
+                }
+            }
+            capacityBytes = Math.min(sharedBytes, limitBytes);
+        }
+
+        synchronized long getCapacityBytes() {
+            return capacityBytes;
+        }
+
+        IdmUnitTest get(String hash, Loader loader) throws IOException {
+            IdmUnitTest test;
+            synchronized (this) {
+                test = tests.get(hash);
+            }
+            if (test == null) {
+                test = loader.load();
+            }
+            synchronized (this) {
+                int remaining = remainingReferences.getOrDefault(hash, 1) - 1;
+                if (remaining > 0) {
+                    remainingReferences.put(hash, remaining);
+                    if (!tests.containsKey(hash)) {
+                        keep(hash, test);
+                    }
+                } else {
+                    remainingReferences.remove(hash);
+                    drop(hash);
+                }
+            }
+            return test;
+        }
+
+        private void keep(String hash, IdmUnitTest test) {
+            long testBytes = estimatedBytes.getOrDefault(hash, 0L);
+            if (testBytes > capacityBytes) {
+                return;
+            }
+            while (usedBytes + testBytes > capacityBytes) {
+                drop(tests.keySet().iterator().next());
+            }
+            tests.put(hash, test);
+            usedBytes += testBytes;
+        }
+
+        private void drop(String hash) {
+            if (tests.remove(hash) != null) {
+                usedBytes -= estimatedBytes.getOrDefault(hash, 0L);
+            }
+        }
+    }
+
     public static class ManifestVersionProvider implements CommandLine.IVersionProvider {
         public String[] getVersion() {
             return new String[] {Excel2Json.class.getPackage().getImplementationVersion()};
@@ -0,0 +1,252 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.cmd;
+
+import com.trivir.idmunit.testconverter.report.RunReport;
+import com.trivir.idmunit.testconverter.report.RunTotals;
+import com.trivir.idmunit.testconverter.report.WorkbookReport;
+import com.trivir.idmunit.testconverter.report.WorkbookStatus;
+import com.trivir.idmunit.testconverter.util.FilesUtils;
+import com.trivir.idmunit.testconverter.util.JsonUtils;
+import com.trivir.idmunit.testconverter.util.Shard;
+import org.fusesource.jansi.Ansi;
+import org.fusesource.jansi.AnsiConsole;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+
+import static picocli.CommandLine.*;
+
+@Command(
+    name = "merge-shards",
+    description = "Merges the partial log files and run reports written by 'excel2json --shard' into a single log file and run report.",
+    mixinStandardHelpOptions = true,
+    versionProvider = MergeShards.ManifestVersionProvider.class,
+    showDefaultValues = true,
+    exitCodeListHeading = "Exit Codes:%n",
+    exitCodeList = {
+        "0:All shards are present and every workbook converted.",
+        "1:At least one workbook failed to convert.",
+        "2:The output of at least one shard is missing or does not match the others."
+    }
+)
+public class MergeShards implements Callable<Integer> {
+
+    public static final int EXIT_CODE_FAILED_WORKBOOKS = 1;
+    public static final int EXIT_CODE_INCOMPLETE_SHARDS = 2;
+
+    @Spec
+    Model.CommandSpec spec;
+
+    @Option(
+        names = "--log-file",
+        description = "The log file path that was given to each shard. The merged log is written to this path, and the merged run report next to it.",
+        defaultValue = "test/test-converter.log"
+    )
+    private Path logFilePath;
+
+    public static void main(String[] args) {
+        // To avoid warnings about Log42 not being in classpath
+        // See https://poi.apache.org/components/logging.html for more information (Specifically the Log4J SimpleLogger section)
+        Properties properties = System.getProperties();
+        properties.setProperty("log4j2.loggerContextFactory", "org.apache.logging.log4j.simple.SimpleLoggerContextFactory");
+
+        AnsiConsole.systemInstall();
+        CommandLine cmd = new CommandLine(new MergeShards());
+        int exitCode = cmd.execute(args);
+        AnsiConsole.systemUninstall();
+        System.exit(exitCode);
+    }
+
+    @Override
+    public Integer call() {
+        Map<Shard, RunReport> shardReports = readShardReports();
+        if (shardReports.isEmpty()) {
+            throw new ParameterException(spec.commandLine(), String.format("No shard run reports found for log file '%s'.", logFilePath));
+        }
+        List<String> shardProblems = checkShardsComplete(shardReports);
+
+        List<WorkbookReport> workbooks = new ArrayList<>();
+        Map<String, List<String>> logBlocks = new HashMap<>();
+        for (Map.Entry<Shard, RunReport> entry : shardReports.entrySet()) {
+            workbooks.addAll(entry.getValue().getWorkbooks());
+            logBlocks.putAll(readLogBlocks(entry.getKey().partialFile(logFilePath, FilesUtils.getExtension(logFilePath))));
+        }
+        workbooks.sort(Comparator.comparingInt(WorkbookReport::getIndex));
+
+        writeMergedLog(workbooks, logBlocks);
+        RunReport firstReport = shardReports.values().iterator().next();
+        RunReport mergedReport = new RunReport();
+        mergedReport.setCommand(firstReport.getCommand());
+        mergedReport.setStartTime(shardReports.values().stream().map(RunReport::getStartTime).filter(Objects::nonNull).min(Comparator.naturalOrder()).orElse(null));
+        mergedReport.setTotalWorkbooks(firstReport.getTotalWorkbooks());
+        long durationMillis = shardReports.values().stream().filter(x -> x.getTotals() != null).mapToLong(x -> x.getTotals().getDurationMillis()).sum();
+        mergedReport.setTotals(RunTotals.of(workbooks, durationMillis));
+        mergedReport.setWorkbooks(workbooks);
+        try {
+            JsonUtils.getWriter().writeValue(getMergedReportPath().toFile(), mergedReport);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        long numFailed = workbooks.stream().filter(x -> x.getStatus() == WorkbookStatus.FAILED).count();
+        long numWithWarnings = workbooks.stream().filter(x -> x.getWarnings() > 0).count();
+        PrintWriter out = spec.commandLine().getOut();
+        out.printf("Merged %d shard(s): %d of %d workbook(s) converted, %d failed, %d with warnings.%n",
+            shardReports.size(), workbooks.size() - numFailed, mergedReport.getTotalWorkbooks(), numFailed, numWithWarnings);
+        out.flush();
+        if (!shardProblems.isEmpty()) {
+            shardProblems.forEach(x -> spec.commandLine().getErr().println(Ansi.ansi().render("@|red " + x + "|@")));
+            return EXIT_CODE_INCOMPLETE_SHARDS;
+        }
+        if (numFailed > 0 || numWithWarnings > 0) {
+            String errorMessage = String.format("At least one of the workbooks contained problems. See the log file '%s' for more details.", logFilePath);
+            spec.commandLine().getErr().println(Ansi.ansi().render("@|yellow " + errorMessage + "|@"));
+        }
+        return numFailed > 0 ? EXIT_CODE_FAILED_WORKBOOKS : 0;
+    }
+
+    private Map<Shard, RunReport> readShardReports() {
+        Map<Shard, RunReport> shardReports = new TreeMap<>(Comparator.comparingInt(Shard::getIndex).thenComparingInt(Shard::getCount));
+        Path directory = logFilePath.toAbsolutePath().getParent();
+        String glob = FilesUtils.stripExtension(logFilePath) + ".shard-*-of-*" + Excel2Json.REPORT_FILE_EXTENSION;
+        try (DirectoryStream<Path> reportPaths = Files.newDirectoryStream(directory, glob)) {
+            for (Path reportPath : reportPaths) {
+                RunReport report = JsonUtils.getMapper().readValue(reportPath.toFile(), RunReport.class);
+                if (report.getShard() == null) {
+                    throw new RuntimeException(String.format("Run report '%s' was not written by a sharded run.", reportPath));
+                }
+                shardReports.put(Shard.parse(report.getShard()), report);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return shardReports;
+    }
+
+    private List<String> checkShardsComplete(Map<Shard, RunReport> shardReports) {
+        List<String> problems = new ArrayList<>();
+        int shardCount = shardReports.keySet().iterator().next().getCount();
+        int totalWorkbooks = shardReports.values().iterator().next().getTotalWorkbooks();
+        for (Map.Entry<Shard, RunReport> entry : shardReports.entrySet()) {
+            if (entry.getKey().getCount() != shardCount) {
+                problems.add(String.format("Shard %s does not belong to a run with %d shards.", entry.getKey(), shardCount));
+            }
+            if (entry.getValue().getTotalWorkbooks() != totalWorkbooks) {
+                problems.add(String.format("Shard %s saw %d workbooks in total, but shard %s saw %d.",
+                    entry.getKey(), entry.getValue().getTotalWorkbooks(), shardReports.keySet().iterator().next(), totalWorkbooks));
+            }
+        }
+        for (int i = 1; i <= shardCount; i++) {
+            if (!shardReports.containsKey(new Shard(i, shardCount))) {
+                problems.add(String.format("No run report found for shard %d/%d.", i, shardCount));
+            }
+        }
+        int numWorkbooks = shardReports.values().stream().mapToInt(x -> x.getWorkbooks().size()).sum();
+        if (problems.isEmpty() && numWorkbooks != totalWorkbooks) {
+            problems.add(String.format("The shards converted %d workbooks, but %d were expected.", numWorkbooks, totalWorkbooks));
+        }
+        return problems;
+    }
+
+    // A log file is a list of blocks separated by blank lines, each block starting with the name of its workbook.
+    private Map<String, List<String>> readLogBlocks(Path partialLogPath) {
+        Map<String, List<String>> blocks = new HashMap<>();
+        if (!Files.exists(partialLogPath)) {
+            return blocks;
+        }
+        List<String> currentBlock = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(partialLogPath)) {
+                if (line.isEmpty()) {
+                    addLogBlock(blocks, currentBlock);
+                    currentBlock = new ArrayList<>();
+                } else {
+                    currentBlock.add(line);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        addLogBlock(blocks, currentBlock);
+        return blocks;
+    }
+
+    private void addLogBlock(Map<String, List<String>> blocks, List<String> block) {
+        if (block.isEmpty() || block.get(0).equals(Excel2Json.NO_PROBLEMS_LOG_MESSAGE)) {
+            return;
+        }
+        blocks.put(block.get(0), block);
+    }
+
+    private void writeMergedLog(List<WorkbookReport> workbooks, Map<String, List<String>> logBlocks) {
+        try (PrintWriter logWriter = new PrintWriter(Files.newOutputStream(logFilePath))) {
+            boolean hasAnyErrors = false;
+            for (WorkbookReport workbook : workbooks) {
+                List<String> block = logBlocks.get(workbook.getWorkbook());
+                if (block == null) {
+                    continue;
+                }
+                if (hasAnyErrors) {
+                    logWriter.println();
+                }
+                hasAnyErrors = true;
+                block.forEach(logWriter::println);
+            }
+            if (!hasAnyErrors) {
+                logWriter.println(Excel2Json.NO_PROBLEMS_LOG_MESSAGE);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Path getMergedReportPath() {
+        return logFilePath.resolveSibling(FilesUtils.stripExtension(logFilePath) + Excel2Json.REPORT_FILE_EXTENSION);
+    }
+
+    public static class ManifestVersionProvider implements CommandLine.IVersionProvider {
+        public String[] getVersion() {
+            return new String[] {MergeShards.class.getPackage().getImplementationVersion()};
+        }
+    }
+}
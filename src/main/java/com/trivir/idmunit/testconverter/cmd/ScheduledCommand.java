@@ -0,0 +1,65 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.cmd;
+
+import com.trivir.idmunit.testconverter.report.RunReport;
+import com.trivir.idmunit.testconverter.util.ConversionScheduler;
+import com.trivir.idmunit.testconverter.util.ProgressDisplay;
+
+import java.util.List;
+
+/**
+ * A conversion command that can hand its work to a {@link ConversionScheduler} shared with other commands, so that
+ * {@link BatchConvert} can run several test directories in one JVM and one worker pool.
+ */
+interface ScheduledCommand<T> extends AutoCloseable {
+
+    /**
+     * Validates the options, adds the workbooks to the progress display and returns one job per workbook.
+     *
+     * @param progress the display shared by every command of the run, which each job reports its workbook to
+     */
+    List<ConversionScheduler.Job<T>> prepareJobs(ProgressDisplay progress);
+
+    /**
+     * The part of the heap budget that the jobs use together and that outlives each of them, such as a cache, which
+     * the scheduler sets aside before running them. Only known once the jobs are prepared.
+     */
+    default long getReservedHeapBytes() {
+        return 0;
+    }
+
+    /**
+     * Writes the log and report files for the results of the jobs, which are given in the order they were prepared.
+     */
+    RunReport finishJobs(List<T> results);
+
+    @Override
+    void close();
+}
@@ -0,0 +1,145 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.converter;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.FormulaError;
+
+/**
+ * The value of a cell, typed as the cell is: a string, number, boolean, formula, error or blank. The parser checks for
+ * blank cells and section delimiters through the type, and a value is only turned into the string a test stores when
+ * that string is asked for, which then keeps it. Every other value, WaitInterval and RetryCount included, is stored as
+ * that string.
+ * <p>
+ * The static methods answer the same questions about a cell without wrapping it, for the cells that are only looked at
+ * once.
+ */
+public final class CellValue {
+
+    private final Cell cell;
+    private final CellType type;
+    private String string;
+
+    public CellValue(Cell cell) {
+        this.cell = cell;
+        this.type = cell.getCellType();
+    }
+
+    public Cell getCell() {
+        return cell;
+    }
+
+    public CellType getType() {
+        return type;
+    }
+
+    public boolean isBlank() {
+        return string != null ? isWhitespace(string) : isBlank(cell);
+    }
+
+    /**
+     * The value as a test stores it: numbers are truncated to integers, formulas are their text, and errors are the
+     * text Excel shows for them, such as #DIV/0!.
+     */
+    public String getString() {
+        if (string == null) {
+            string = toString(cell);
+        }
+        return string;
+    }
+
+    @Override
+    public String toString() {
+        return getString();
+    }
+
+    /**
+     * Whether the cell is blank, or holds nothing but whitespace, without converting a number or boolean to a string.
+     */
+    public static boolean isBlank(Cell cell) {
+        switch (cell.getCellType()) {
+            case BLANK:
+                return true;
+            case STRING:
+                return isWhitespace(cell.getStringCellValue());
+            case FORMULA:
+                return isWhitespace(cell.getCellFormula());
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Whether the cell holds exactly the string, comparing text cells without copying their text.
+     */
+    public static boolean hasString(Cell cell, String string) {
+        switch (cell.getCellType()) {
+            case BLANK:
+                return string.isEmpty();
+            case STRING:
+                return string.equals(cell.getStringCellValue());
+            case FORMULA:
+                return string.equals(cell.getCellFormula());
+            default:
+                return string.equals(toString(cell));
+        }
+    }
+
+    public static String toString(Cell cell) {
+        switch (cell.getCellType()) {
+            case STRING:
+                return cell.getStringCellValue();
+            case NUMERIC:
+                // This is written these ways to match the IdmUnit Core parser
+                return Integer.toString((int) cell.getNumericCellValue());
+            case BOOLEAN:
+                return cell.getBooleanCellValue() ? "true" : "false";
+            case FORMULA:
+                return cell.getCellFormula();
+            case BLANK:
+                return "";
+            case ERROR:
+                byte errorCode = cell.getErrorCellValue();
+                return FormulaError.isValidCode(errorCode) ? FormulaError.forInt(errorCode).getString() : "#ERROR!";
+            default:
+                throw new UnsupportedOperationException(String.format("Cannot parse cell %s as string", cell.getAddress()));
+        }
+    }
+
+    // Whitespace as String.trim() sees it, without making the trimmed copy
+    private static boolean isWhitespace(String string) {
+        for (int i = 0; i < string.length(); i++) {
+            if (string.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
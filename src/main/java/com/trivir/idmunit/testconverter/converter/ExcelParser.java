@@ -29,6 +29,10 @@
 package com.trivir.idmunit.testconverter.converter;
 
 import com.trivir.idmunit.testconverter.converter.model.*;
+import com.trivir.idmunit.testconverter.report.PhaseStats;
+import com.trivir.idmunit.testconverter.report.SheetStats;
+import com.trivir.idmunit.testconverter.util.ConversionEvents;
+import com.trivir.idmunit.testconverter.util.PhaseTimer;
 import lombok.Getter;
 import lombok.Value;
 import org.apache.poi.ss.usermodel.Cell;
@@ -37,6 +41,7 @@ import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -46,6 +51,7 @@ public class ExcelParser {
 
     private static final String SECTION_DELIMITER_ROW_VALUE = "---";
     private static final String COMMENT_OPERATION_VALUE = "comment";
+    private static final int NUM_SECTIONS_DELIMITER_ROWS = 3;
 
     @Getter
     private String sheetName;
@@ -56,65 +62,197 @@ public class ExcelParser {
     private boolean sheetHasIsCriticalOpConfigHeader = false;
     private boolean sheetHasRepeatOpRangeOpConfigHeader = false;
 
+    private final SheetScanBudget scanBudget;
+
+    // Kept for as long as the parser, which is made for one workbook, so that the sheets of a workbook share the names
+    // and flags they repeat as well
+    private final StringPool stringPool = new StringPool();
+    // The columns an operation row may have values in, by the connector attributes of its target
+    private final Map<List<CellValue>, BitSet> knownColumnsByConnector = new IdentityHashMap<>();
+
     public ExcelParser(boolean verbose) {
+        this(verbose, SheetScanBudget.DEFAULT);
+    }
+
+    public ExcelParser(boolean verbose, SheetScanBudget scanBudget) {
         lintMessages = new LintMessages(verbose);
+        this.scanBudget = scanBudget;
     }
 
     public IdmUnitTest parseSheet(Sheet sheet) throws IdmUnitTestConverterException {
+        return parseSheet(sheet, new SheetStats());
+    }
+
+    public IdmUnitTest parseSheet(Sheet sheet, SheetStats stats) throws IdmUnitTestConverterException {
+        ConversionEvents.Recording parseEvent = ConversionEvents.begin(ConversionEvents.Type.SHEET_PARSE);
+        PhaseTimer parseTimer = stats.time(PhaseStats.PARSE);
+        SheetHeader header = parseHeader(sheet, stats);
+        Map<String, List<CellValue>> connectorAttributesMap = header.getConnectorAttributesMap();
+        // Operations Section
+        List<Map<String, CellValue>> operationDataList = parseOperations(header.getRowGroups().getOperationRows(), header.getFirstRowHeaders(), connectorAttributesMap);
+        checkUnknownRows(header.getRowGroups(), stats);
+        parseTimer.stop();
+        PhaseTimer mapTimer = stats.time(PhaseStats.MAP);
+        // Map into Java structure for easy JSON conversion
+        List<Operation> operations = operationDataList.stream()
+            .map(this::mapOperationData)
+            .collect(Collectors.toList());
+        List<String> inferredTargets = operations.stream()
+            .map(Operation::getTarget)
+            .filter(x -> x != null && !x.trim().isEmpty())
+            .filter(x -> !connectorAttributesMap.containsKey(x))
+            .collect(Collectors.toList());
+        IdmUnitTest idmUnitTest = new IdmUnitTest();
+        idmUnitTest.setName(sheet.getSheetName());
+        idmUnitTest.setTitle(header.getTestDetails().getTitle());
+        idmUnitTest.setDesc(header.getTestDetails().getDescription());
+        idmUnitTest.setColumnWidths(parseColumnWidths(header.getRowGroups()));
+        idmUnitTest.setConnectors(mapConnectors(header, inferredTargets));
+        idmUnitTest.setOperations(operations);
+        idmUnitTest.setHasIsCriticalConfigHeader(sheetHasIsCriticalOpConfigHeader ? true : null);
+        idmUnitTest.setHasRepeatOpRangeConfigHeader(sheetHasRepeatOpRangeOpConfigHeader ? true : null);
+        mapTimer.stop();
+        parseEvent.end(stats.getWorkbook(), sheetName, stats.getRows(), 0);
+        return idmUnitTest;
+    }
+
+    /**
+     * Parses a sheet like {@link #parseSheet(Sheet, SheetStats)}, with the same warnings and errors, and returns the
+     * schema 1.0 JSON of the test it would return, in the same bytes as serializing the test. Every operation is
+     * written as soon as its row is parsed, and no test is built.
+     *
+     * @param pretty whether to indent the JSON like {@link TestSchema#write}, or write it on one line like
+     *               {@link TestSchema#writeLine}
+     */
+    public byte[] transcodeSheet(Sheet sheet, SheetStats stats, boolean pretty) throws IdmUnitTestConverterException {
+        ConversionEvents.Recording parseEvent = ConversionEvents.begin(ConversionEvents.Type.SHEET_PARSE);
+        PhaseTimer parseTimer = stats.time(PhaseStats.PARSE);
+        SheetHeader header = parseHeader(sheet, stats);
+        Map<String, List<CellValue>> connectorAttributesMap = header.getConnectorAttributesMap();
+        // Operations Section
+        List<Row> operationRows = header.getRowGroups().getOperationRows();
+        checkNoBlankOperationRows(operationRows);
+        JsonTranscoder transcoder = new JsonTranscoder(pretty);
+        List<String> inferredTargets = new ArrayList<>();
+        // The operation is written before the next row is parsed, so one map holds every row in turn
+        Map<String, CellValue> rowData = new LinkedHashMap<>();
+        for (Row row : operationRows) {
+            rowData.clear();
+            Map<String, CellValue> operationData = parseOperationRow(row, header.getFirstRowHeaders(), connectorAttributesMap, rowData);
+            transcoder.writeOperation(operationData);
+            CellValue target = operationData.get(OperationConfigHeader.TARGET.getExcelHeader());
+            if (target != null && !target.isBlank() && !connectorAttributesMap.containsKey(target.getString())) {
+                inferredTargets.add(target.getString());
+            }
+        }
+        checkUnknownRows(header.getRowGroups(), stats);
+        parseTimer.stop();
+        PhaseTimer serializeTimer = stats.time(PhaseStats.SERIALIZE);
+        byte[] content = transcoder.finish(sheet.getSheetName(), header.getTestDetails().getTitle(), header.getTestDetails().getDescription(),
+            parseColumnWidths(header.getRowGroups()), mapConnectors(header, inferredTargets),
+            sheetHasIsCriticalOpConfigHeader, sheetHasRepeatOpRangeOpConfigHeader);
+        serializeTimer.stop();
+        parseEvent.end(stats.getWorkbook(), sheetName, stats.getRows(), 0);
+        return content;
+    }
+
+    // Everything above the operations, which parsing and transcoding a sheet share
+    private SheetHeader parseHeader(Sheet sheet, SheetStats stats) throws IdmUnitTestConverterException {
         lintMessages.clear();
+        knownColumnsByConnector.clear();
         sheetHasIsCriticalOpConfigHeader = false;
         sheetHasRepeatOpRangeOpConfigHeader = false;
         this.sheetName = sheet.getSheetName();
         // Get row sections
-        List<Row> sectionDelimiterRows = StreamSupport.stream(sheet.spliterator(), false)
-            .filter(x -> ExcelUtils.parseCellAsString(ExcelUtils.getCellOrBlank(x, 0)).equals(SECTION_DELIMITER_ROW_VALUE))
-            .collect(Collectors.toList());
-        if (sectionDelimiterRows.size() < 3) {
-            throw lintMessages.errorTooFewSectionDelimiterRows(sectionDelimiterRows.size());
-        } else if (sectionDelimiterRows.size() > 3) {
-            lintMessages.warnTooManySectionDelimiterRows(sectionDelimiterRows.size());
-        }
-        sectionDelimiterRows.forEach(this::checkSectionDelimiterRow);
-        RowGroups rowGroups = parseRowGroups(sheet, sectionDelimiterRows);
+        RowGroups rowGroups = locateSections(sheet, stats);
+        ConversionEvents.Recording lintEvent = ConversionEvents.begin(ConversionEvents.Type.LINT);
+        rowGroups.getDelimiterRows().forEach(this::checkSectionDelimiterRow);
+        lintEvent.end(stats.getWorkbook(), sheetName, rowGroups.getDelimiterRows().size(), 0);
         if (rowGroups.getConnectorRows().isEmpty()) {
             throw lintMessages.errorNoRowsInConnectorsSection();
         }
         // Test Details Section
-        String testName = sheet.getSheetName();
         TestDetails testDetails = parseTestDetails(rowGroups.getTestDetailsRows());
         // Connectors Section
         FirstRowHeaders firstRowHeaders = parseFirstConnectorRow(rowGroups.getConnectorRows().get(0));
         List<Row> connectorRows = rowGroups.getConnectorRows().subList(1, rowGroups.getConnectorRows().size());
-        Map<String, List<CellWrapper>> connectorAttributesMap = parseConnectorAttributes(connectorRows, firstRowHeaders.getOperationConfigHeaders());
-        // Operations Section
-        List<Map<String, CellWrapper>> operationDataList = parseOperations(rowGroups.getOperationRows(), firstRowHeaders, connectorAttributesMap);
-        // Unknown Rows
+        Map<String, List<CellValue>> connectorAttributesMap = parseConnectorAttributes(connectorRows, firstRowHeaders.getOperationConfigHeaders());
+        return new SheetHeader(rowGroups, testDetails, firstRowHeaders, connectorAttributesMap);
+    }
+
+    private void checkUnknownRows(RowGroups rowGroups, SheetStats stats) {
+        ConversionEvents.Recording lintEvent = ConversionEvents.begin(ConversionEvents.Type.LINT);
         rowGroups.unknownRows.forEach(this::checkUnknownRow);
-        // Map into Java structure for easy JSON conversion
-        List<Connector> connectors = connectorAttributesMap.entrySet().stream()
+        lintEvent.end(stats.getWorkbook(), sheetName, rowGroups.unknownRows.size(), 0);
+    }
+
+    // The connectors of the Connectors Section, followed by one with the default connector attributes for every
+    // operation whose target is not defined there
+    private List<Connector> mapConnectors(SheetHeader header, List<String> inferredTargets) {
+        List<Connector> connectors = header.getConnectorAttributesMap().entrySet().stream()
             .map(entry -> mapConnector(entry.getKey(), entry.getValue()))
             .collect(Collectors.toList());
-        List<Operation> operations = operationDataList.stream()
-            .map(this::mapOperationData)
-            .collect(Collectors.toList());
-        List<Connector> inferredConnectors = operations.stream()
-            .map(Operation::getTarget)
-            .filter(x -> x != null && !x.trim().isEmpty())
-            .filter(x -> !connectorAttributesMap.containsKey(x))
-            .map(x -> mapConnector(x, firstRowHeaders.getDefaultConnectorAttributes()))
-            .collect(Collectors.toList());
-        connectors.addAll(inferredConnectors);
+        inferredTargets.forEach(x -> connectors.add(mapConnector(x, header.getFirstRowHeaders().getDefaultConnectorAttributes())));
         normalizeConnectorAttrGroupNums(connectors);
-        IdmUnitTest idmUnitTest = new IdmUnitTest();
-        idmUnitTest.setName(testName);
-        idmUnitTest.setTitle(testDetails.getTitle());
-        idmUnitTest.setDesc(testDetails.getDescription());
-        idmUnitTest.setColumnWidths(parseColumnWidths(rowGroups));
-        idmUnitTest.setConnectors(connectors);
-        idmUnitTest.setOperations(operations);
-        idmUnitTest.setHasIsCriticalConfigHeader(sheetHasIsCriticalOpConfigHeader ? true : null);
-        idmUnitTest.setHasRepeatOpRangeConfigHeader(sheetHasRepeatOpRangeOpConfigHeader ? true : null);
-        return idmUnitTest;
+        return connectors;
+    }
+
+    // Rows are split into sections by their position relative to the delimiter rows, which are found by looking at
+    // column A alone. Helper and data sheets without enough delimiter rows are rejected before any other cell is read.
+    //
+    // Sheets that were once formatted far beyond their data can hold up to a million styled but blank rows, each with
+    // thousands of blank cells. Rows are read only once, and reading stops at a long run of blank rows after the last
+    // section, which is where such a region starts. The budget catches the sheets this does not help.
+    private RowGroups locateSections(Sheet sheet, SheetStats stats) {
+        long startNanos = System.nanoTime();
+        List<Row> rows = new ArrayList<>();
+        List<Integer> delimiterIndices = new ArrayList<>();
+        long numCells = 0;
+        int numConsecutiveBlankRows = 0;
+        for (Row row : sheet) {
+            if (scanBudget.getMaxRows() > 0 && rows.size() >= scanBudget.getMaxRows()) {
+                throw lintMessages.errorSheetRowBudgetExceeded(row, scanBudget.getMaxRows());
+            }
+            numCells += row.getPhysicalNumberOfCells();
+            if (scanBudget.getMaxCells() > 0 && numCells > scanBudget.getMaxCells()) {
+                throw lintMessages.errorSheetCellBudgetExceeded(row, scanBudget.getMaxCells());
+            }
+            if (scanBudget.getMaxSeconds() > 0 && System.nanoTime() - startNanos > TimeUnit.SECONDS.toNanos(scanBudget.getMaxSeconds())) {
+                throw lintMessages.errorSheetTimeBudgetExceeded(row, scanBudget.getMaxSeconds());
+            }
+            if (isSectionDelimiterRow(row)) {
+                delimiterIndices.add(rows.size());
+                numConsecutiveBlankRows = 0;
+            } else if (delimiterIndices.size() >= NUM_SECTIONS_DELIMITER_ROWS && isRowBlank(row)) {
+                numConsecutiveBlankRows++;
+                if (scanBudget.getMaxTrailingBlankRows() > 0 && numConsecutiveBlankRows >= scanBudget.getMaxTrailingBlankRows()) {
+                    break;
+                }
+            } else {
+                numConsecutiveBlankRows = 0;
+            }
+            rows.add(row);
+        }
+        stats.setRows(rows.size());
+        stats.setCells(numCells);
+        if (delimiterIndices.size() < NUM_SECTIONS_DELIMITER_ROWS) {
+            throw lintMessages.errorTooFewSectionDelimiterRows(delimiterIndices.size());
+        } else if (delimiterIndices.size() > NUM_SECTIONS_DELIMITER_ROWS) {
+            lintMessages.warnTooManySectionDelimiterRows(delimiterIndices.size());
+        }
+        // Rows after a fourth delimiter row are not part of any section and are ignored
+        int endOfUnknownRows = delimiterIndices.size() > NUM_SECTIONS_DELIMITER_ROWS ? delimiterIndices.get(NUM_SECTIONS_DELIMITER_ROWS) : rows.size();
+        return new RowGroups(
+            delimiterIndices.stream().map(rows::get).collect(Collectors.toList()),
+            rows.subList(0, delimiterIndices.get(0)),
+            rows.subList(delimiterIndices.get(0) + 1, delimiterIndices.get(1)),
+            rows.subList(delimiterIndices.get(1) + 1, delimiterIndices.get(2)),
+            rows.subList(delimiterIndices.get(2) + 1, endOfUnknownRows)
+        );
+    }
+
+    private boolean isSectionDelimiterRow(Row row) {
+        return CellValue.hasString(ExcelUtils.getCellOrBlank(row, 0), SECTION_DELIMITER_ROW_VALUE);
     }
 
     // POI will only return a cell's width if it's populated. querying cell width on a single row returns only a few values.
@@ -141,31 +279,10 @@ public class ExcelParser {
     private void checkSectionDelimiterRow(Row row) {
         StreamSupport.stream(row.spliterator(), false)
             .skip(1)
-            .filter(x -> !ExcelUtils.parseCellAsString(x).trim().isEmpty())
+            .filter(x -> !CellValue.isBlank(x))
             .forEach(lintMessages::warnCellWithValueOnSectionDelimiterRow);
     }
 
-    private RowGroups parseRowGroups(Sheet sheet, List<Row> delimiterRows) {
-        Map<Integer, List<Row>> groups = StreamSupport.stream(sheet.spliterator(), false)
-            .filter(row -> delimiterRows.stream().noneMatch(x -> row.getRowNum() == x.getRowNum()))
-            .collect(Collectors.groupingBy(x -> determineRowGroup(x, delimiterRows)));
-        return new RowGroups(
-            groups.getOrDefault(0, new ArrayList<>()),
-            groups.getOrDefault(1, new ArrayList<>()),
-            groups.getOrDefault(2, new ArrayList<>()),
-            groups.getOrDefault(3, new ArrayList<>())
-        );
-    }
-
-    private int determineRowGroup(Row row, List<Row> delimiterRows) {
-        for (int i = 0; i < delimiterRows.size(); i++) {
-            if (row.getRowNum() < delimiterRows.get(i).getRowNum()) {
-                return i;
-            }
-        }
-        return delimiterRows.size();
-    }
-
     private TestDetails parseTestDetails(List<Row> titleRows) {
         if (titleRows.isEmpty()) {
             lintMessages.warnNoRowsInTestDetailsSection();
@@ -181,7 +298,7 @@ public class ExcelParser {
         }
         List<Cell> badCells = titleRows.stream()
             .map(row -> StreamSupport.stream(row.spliterator(), false)
-                .filter(cell -> !ExcelUtils.parseCellAsString(cell).trim().isEmpty())
+                .filter(cell -> !CellValue.isBlank(cell))
                 .filter(cell -> cell.getRowIndex() > 1 || cell.getColumnIndex() > 0)
                 .collect(Collectors.toList()))
             .flatMap(Collection::stream)
@@ -191,27 +308,27 @@ public class ExcelParser {
     }
 
     private FirstRowHeaders parseFirstConnectorRow(Row row) {
-        Map<Boolean, List<CellWrapper>> headers = StreamSupport.stream(row.spliterator(), false)
-            .filter(x -> !ExcelUtils.parseCellAsString(x).trim().isEmpty())
-            .map(CellWrapper::new)
-            .collect(Collectors.partitioningBy(x -> x.getValue().startsWith(OperationConfigHeader.PREFIX)));
-        List<CellWrapper> operationConfigHeaders = headers.get(true).stream()
+        Map<Boolean, List<CellValue>> headers = StreamSupport.stream(row.spliterator(), false)
+            .filter(x -> !CellValue.isBlank(x))
+            .map(CellValue::new)
+            .collect(Collectors.partitioningBy(x -> x.getString().startsWith(OperationConfigHeader.PREFIX)));
+        List<CellValue> operationConfigHeaders = headers.get(true).stream()
             // No connector attributes should start with the Operation Config Prefix
             .peek(x -> {
-                if (!OperationConfigHeader.isKnownExcelOpConfigHeader(x.getValue())) {
+                if (!OperationConfigHeader.isKnownExcelOpConfigHeader(x.getString())) {
                     lintMessages.warnUnknownHeaderWithOperationConfigPrefix(x.getCell(), OperationConfigHeader.PREFIX);
                 }
             })
-            .filter(x -> OperationConfigHeader.isKnownExcelOpConfigHeader(x.getValue()))
+            .filter(x -> OperationConfigHeader.isKnownExcelOpConfigHeader(x.getString()))
             .collect(Collectors.toList());
         // Check for operation config headers: Error if no Target, mark if there is IsCritical or RepeatOpRange
         boolean hasTargetHeader = false;
-        for (CellWrapper configHeaderCell : operationConfigHeaders) {
-            if (configHeaderCell.getValue().equals(OperationConfigHeader.TARGET.getExcelHeader())) {
+        for (CellValue configHeaderCell : operationConfigHeaders) {
+            if (configHeaderCell.getString().equals(OperationConfigHeader.TARGET.getExcelHeader())) {
                 hasTargetHeader = true;
-            } else if (configHeaderCell.getValue().equals(OperationConfigHeader.IS_CRITICAL.getExcelHeader())) {
+            } else if (configHeaderCell.getString().equals(OperationConfigHeader.IS_CRITICAL.getExcelHeader())) {
                 sheetHasIsCriticalOpConfigHeader = true;
-            } else if (configHeaderCell.getValue().equals(OperationConfigHeader.REPEAT_OP_RANGE.getExcelHeader())) {
+            } else if (configHeaderCell.getString().equals(OperationConfigHeader.REPEAT_OP_RANGE.getExcelHeader())) {
                 sheetHasRepeatOpRangeOpConfigHeader = true;
             }
         }
@@ -221,17 +338,17 @@ public class ExcelParser {
         return new FirstRowHeaders(operationConfigHeaders, headers.get(false));
     }
 
-    private Map<String, List<CellWrapper>> parseConnectorAttributes(List<Row> connectorRows, List<CellWrapper> operationConfigHeaders) {
-        Map<String, List<CellWrapper>> connectorAttrsMap = new LinkedHashMap<>();
+    private Map<String, List<CellValue>> parseConnectorAttributes(List<Row> connectorRows, List<CellValue> operationConfigHeaders) {
+        Map<String, List<CellValue>> connectorAttrsMap = new LinkedHashMap<>();
         int targetColIndex = operationConfigHeaders.stream()
-            .filter(x -> x.getValue().equals(OperationConfigHeader.TARGET.getExcelHeader()))
+            .filter(x -> x.getString().equals(OperationConfigHeader.TARGET.getExcelHeader()))
             .findFirst()
             // Should already have thrown error if target column was not defined
             .orElseThrow(lintMessages::errorNoTargetOperationConfigHeader)
             .getCell()
             .getColumnIndex();
         List<Integer> operationConfigHeaderColIndices = operationConfigHeaders.stream()
-            .filter(x -> !x.getValue().equals(OperationConfigHeader.TARGET.getExcelHeader()))
+            .filter(x -> !x.getString().equals(OperationConfigHeader.TARGET.getExcelHeader()))
             .map(x -> x.getCell().getColumnIndex())
             .collect(Collectors.toList());
         for (Row row : connectorRows) {
@@ -240,15 +357,15 @@ public class ExcelParser {
                 lintMessages.warnConnectorRowWithNoName(row);
                 continue;
             }
-            List<CellWrapper> attrs = StreamSupport.stream(row.spliterator(), false)
-                .filter(x -> !ExcelUtils.parseCellAsString(x).trim().isEmpty())
+            List<CellValue> attrs = StreamSupport.stream(row.spliterator(), false)
+                .filter(x -> !CellValue.isBlank(x))
                 .peek(x -> {
                     if (operationConfigHeaderColIndices.contains(x.getColumnIndex())) {
                         lintMessages.warnConnectorAttributeUnderOperationConfigHeader(x);
                     }
                 })
                 .filter(x -> !operationConfigHeaderColIndices.contains(x.getColumnIndex()) && x.getColumnIndex() != targetColIndex)
-                .map(CellWrapper::new)
+                .map(CellValue::new)
                 .collect(Collectors.toList());
             if (connectorAttrsMap.containsKey(connectorName)) {
                 int originalRowNum = connectorAttrsMap.get(connectorName).get(0).getCell().getRowIndex();
@@ -259,79 +376,87 @@ public class ExcelParser {
         return connectorAttrsMap;
     }
 
-    private List<Map<String, CellWrapper>> parseOperations(List<Row> operationRows, FirstRowHeaders firstRowHeaders, Map<String, List<CellWrapper>> connectorAttrsMap) {
-        List<Row> blankRows = operationRows.stream()
-            .filter(this::isRowBlank)
-            .collect(Collectors.toList());
-        // No blank rows allowed
-        Optional<Row> blankRow = blankRows.stream().findFirst();
-        if (blankRow.isPresent()) {
-            throw lintMessages.errorBlankOperationRow(blankRow.get());
+    private List<Map<String, CellValue>> parseOperations(List<Row> operationRows, FirstRowHeaders firstRowHeaders, Map<String, List<CellValue>> connectorAttrsMap) {
+        checkNoBlankOperationRows(operationRows);
+        List<Map<String, CellValue>> operationDataList = new ArrayList<>();
+        for (Row row : operationRows) {
+            operationDataList.add(parseOperationRow(row, firstRowHeaders, connectorAttrsMap, new LinkedHashMap<>()));
         }
-        List<Map<String, CellWrapper>> operationDataList = new ArrayList<>();
+        return operationDataList;
+    }
+
+    private void checkNoBlankOperationRows(List<Row> operationRows) {
+        // No blank rows allowed
         for (Row row : operationRows) {
-            Map<String, CellWrapper> operationData = new LinkedHashMap<>();
-            // Collect all cells under Operation Config Headers in this row
-            for (CellWrapper header : firstRowHeaders.getOperationConfigHeaders()) {
-                Cell cell = ExcelUtils.getCellOrBlank(row, header.getCell().getColumnIndex());
-                operationData.put(header.getValue(), new CellWrapper(cell));
+            if (isRowBlank(row)) {
+                throw lintMessages.errorBlankOperationRow(row);
             }
-            // Handle comment operation
-            CellWrapper operationCell = operationData.get(OperationConfigHeader.OPERATION.getExcelHeader());
-            if (operationCell != null && operationCell.getValue().trim().equals(COMMENT_OPERATION_VALUE)) {
-                operationDataList.add(parseCommentOperation(row, operationData));
+        }
+    }
+
+    // The cells are put in the empty map given, which is returned unless the row is a comment operation
+    private Map<String, CellValue> parseOperationRow(Row row, FirstRowHeaders firstRowHeaders, Map<String, List<CellValue>> connectorAttrsMap, Map<String, CellValue> operationData) {
+        // Collect all cells under Operation Config Headers in this row
+        for (CellValue header : firstRowHeaders.getOperationConfigHeaders()) {
+            Cell cell = ExcelUtils.getCellOrBlank(row, header.getCell().getColumnIndex());
+            operationData.put(header.getString(), new CellValue(cell));
+        }
+        // Handle comment operation
+        CellValue operationCell = operationData.get(OperationConfigHeader.OPERATION.getExcelHeader());
+        if (operationCell != null && operationCell.getString().trim().equals(COMMENT_OPERATION_VALUE)) {
+            return parseCommentOperation(row, operationData);
+        }
+        // Ensure target connector is defined for this operation
+        CellValue targetConnector = operationData.get(OperationConfigHeader.TARGET.getExcelHeader());
+        if (targetConnector == null || targetConnector.isBlank()) {
+            throw lintMessages.errorOperationRowWithNoTargetDefined(row);
+        }
+        // Use default connector attributes if target connector was not defined in Connectors Section
+        List<CellValue> connectorAttrs = connectorAttrsMap.get(targetConnector.getString());
+        if (connectorAttrs == null) {
+            connectorAttrs = firstRowHeaders.getDefaultConnectorAttributes();
+        }
+        // Parse all operation data in cells under the target connectors' attrs
+        for (CellValue attr : connectorAttrs) {
+            Cell cell = ExcelUtils.getCellOrBlank(row, attr.getCell().getColumnIndex());
+            if (CellValue.isBlank(cell)) {
                 continue;
             }
-            // Ensure target connector is defined for this operation
-            CellWrapper targetConnector = operationData.get(OperationConfigHeader.TARGET.getExcelHeader());
-            if (targetConnector == null || targetConnector.getValue().trim().isEmpty()) {
-                throw lintMessages.errorOperationRowWithNoTargetDefined(row);
-            }
-            // Use default connector attributes if target connector was not defined in Connectors Section
-            List<CellWrapper> connectorAttrs = connectorAttrsMap.get(targetConnector.getValue());
-            if (connectorAttrs == null) {
-                connectorAttrs = firstRowHeaders.getDefaultConnectorAttributes();
+            // Warn if two values defined for the same connector attribute
+            if (operationData.containsKey(attr.getString())) {
+                Cell originalCell = operationData.get(attr.getString()).getCell();
+                lintMessages.warnOperationDataForDuplicateAttr(cell, originalCell, attr.getString());
             }
-            // Parse all operation data in cells under the target connectors' attrs
-            for (CellWrapper attr : connectorAttrs) {
-                Cell cell = ExcelUtils.getCellOrBlank(row, attr.getCell().getColumnIndex());
-                if (ExcelUtils.parseCellAsString(cell).trim().isEmpty()) {
-                    continue;
-                }
-                // Warn if two values defined for the same connector attribute
-                if (operationData.containsKey(attr.getValue())) {
-                    Cell originalCell = operationData.get(attr.getValue()).getCell();
-                    lintMessages.warnOperationDataForDuplicateAttr(cell, originalCell, attr.getValue());
-                }
-                operationData.put(attr.getValue(), new CellWrapper(cell));
+            operationData.put(attr.getString(), new CellValue(cell));
+        }
+        // Warn if the row contains non-blank cells in columns with no header (operation config or connector attr)
+        BitSet knownColumns = knownColumnsByConnector.computeIfAbsent(connectorAttrs, attrs -> {
+            BitSet columns = new BitSet();
+            attrs.forEach(header -> columns.set(header.getCell().getColumnIndex()));
+            firstRowHeaders.getOperationConfigHeaders().forEach(header -> columns.set(header.getCell().getColumnIndex()));
+            return columns;
+        });
+        for (Cell cell : row) {
+            if (!knownColumns.get(cell.getColumnIndex()) && !CellValue.isBlank(cell)) {
+                lintMessages.warnNonBlankCellInColumnWithNoHeader(cell);
             }
-            // Warn if the row contains non-blank cells in columns with no header (operation config or connector attr)
-            List<Integer> knownColumns = connectorAttrs.stream()
-                .map(header -> header.getCell().getColumnIndex())
-                .collect(Collectors.toList());
-            knownColumns.addAll(
-                firstRowHeaders.getOperationConfigHeaders().stream()
-                    .map(header -> header.getCell().getColumnIndex())
-                    .collect(Collectors.toList())
-            );
-            StreamSupport.stream(row.spliterator(), false)
-                .filter(x -> !ExcelUtils.parseCellAsString(x).trim().isEmpty())
-                .filter(x -> !knownColumns.contains(x.getColumnIndex()))
-                .forEach(lintMessages::warnNonBlankCellInColumnWithNoHeader);
-            operationDataList.add(operationData);
         }
-        return operationDataList;
+        return operationData;
     }
 
     private boolean isRowBlank(Row row) {
-        return StreamSupport.stream(row.spliterator(), false)
-            .allMatch(cell -> ExcelUtils.parseCellAsString(cell).trim().isEmpty());
+        for (Cell cell : row) {
+            if (!CellValue.isBlank(cell)) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    private Map<String, CellWrapper> parseCommentOperation(Row row, Map<String, CellWrapper> operationData) {
-        CellWrapper commentCell = operationData.get(OperationConfigHeader.COMMENT.getExcelHeader());
+    private Map<String, CellValue> parseCommentOperation(Row row, Map<String, CellValue> operationData) {
+        CellValue commentCell = operationData.get(OperationConfigHeader.COMMENT.getExcelHeader());
         // Warn if no comment is defined
-        if (commentCell == null || commentCell.getValue().trim().isEmpty()) {
+        if (commentCell == null || commentCell.isBlank()) {
             lintMessages.warnCommentOperationWithNoCommentDefined(row);
         }
         // All cells should be blank on a comment operation row except under Operation and Comment config headers
@@ -342,9 +467,9 @@ public class ExcelParser {
         }
         StreamSupport.stream(row.spliterator(), false)
             .filter(x -> !colIndicesToIgnore.contains(x.getColumnIndex()))
-            .filter(x -> !ExcelUtils.parseCellAsString(x).trim().isEmpty())
+            .filter(x -> !CellValue.isBlank(x))
             .forEach(lintMessages::warnNonBlankCellOnCommentOperationRow);
-        Map<String, CellWrapper> returnMap = new HashMap<>();
+        Map<String, CellValue> returnMap = new HashMap<>();
         returnMap.put(OperationConfigHeader.COMMENT.getExcelHeader(), operationData.get(OperationConfigHeader.COMMENT.getExcelHeader()));
         returnMap.put(OperationConfigHeader.OPERATION.getExcelHeader(), operationData.get(OperationConfigHeader.OPERATION.getExcelHeader()));
         return returnMap;
@@ -352,18 +477,18 @@ public class ExcelParser {
 
     private void checkUnknownRow(Row row) {
         StreamSupport.stream(row.spliterator(), false)
-            .filter(x -> !ExcelUtils.parseCellAsString(x).trim().isEmpty())
+            .filter(x -> !CellValue.isBlank(x))
             .forEach(lintMessages::warnNonBlankCellInRowAfterOperationSection);
     }
 
-    private Connector mapConnector(String connectorName, List<CellWrapper> attrs) {
+    private Connector mapConnector(String connectorName, List<CellValue> attrs) {
         final Connector connector = new Connector();
-        connector.setName(connectorName);
+        connector.setName(stringPool.get(connectorName));
 
         final List<ConnectorAttribute> attributes = attrs.stream()
             .map(x -> {
                 ConnectorAttribute attribute = new ConnectorAttribute();
-                attribute.setName(x.getValue());
+                attribute.setName(stringPool.get(x.getString()));
                 attribute.setGroupNum(x.getCell().getColumnIndex());
                 return attribute;
             })
@@ -373,44 +498,44 @@ public class ExcelParser {
         return connector;
     }
 
-    private Operation mapOperationData(Map<String, CellWrapper> operationData) {
+    private Operation mapOperationData(Map<String, CellValue> operationData) {
         Operation operation = new Operation();
         if (operationData.get(OperationConfigHeader.COMMENT.getExcelHeader()) != null) {
-            operation.setComment(operationData.get(OperationConfigHeader.COMMENT.getExcelHeader()).getValue());
+            operation.setComment(operationData.get(OperationConfigHeader.COMMENT.getExcelHeader()).getString());
         }
         if (operationData.get(OperationConfigHeader.OPERATION.getExcelHeader()) != null) {
-            operation.setOperation(operationData.get(OperationConfigHeader.OPERATION.getExcelHeader()).getValue());
+            operation.setOperation(stringPool.get(operationData.get(OperationConfigHeader.OPERATION.getExcelHeader()).getString()));
         }
         if (operationData.get(OperationConfigHeader.TARGET.getExcelHeader()) != null) {
-            operation.setTarget(operationData.get(OperationConfigHeader.TARGET.getExcelHeader()).getValue());
+            operation.setTarget(stringPool.get(operationData.get(OperationConfigHeader.TARGET.getExcelHeader()).getString()));
         }
         if (operationData.get(OperationConfigHeader.WAIT_INTERVAL.getExcelHeader()) != null) {
-            operation.setWaitInterval(operationData.get(OperationConfigHeader.WAIT_INTERVAL.getExcelHeader()).getValue());
+            operation.setWaitInterval(stringPool.get(operationData.get(OperationConfigHeader.WAIT_INTERVAL.getExcelHeader()).getString()));
         }
         if (operationData.get(OperationConfigHeader.RETRY_COUNT.getExcelHeader()) != null) {
-            operation.setRetryCount(operationData.get(OperationConfigHeader.RETRY_COUNT.getExcelHeader()).getValue());
+            operation.setRetryCount(stringPool.get(operationData.get(OperationConfigHeader.RETRY_COUNT.getExcelHeader()).getString()));
         }
         if (operationData.get(OperationConfigHeader.DISABLE_STEP.getExcelHeader()) != null) {
-            operation.setDisabled(operationData.get(OperationConfigHeader.DISABLE_STEP.getExcelHeader()).getValue());
+            operation.setDisabled(stringPool.get(operationData.get(OperationConfigHeader.DISABLE_STEP.getExcelHeader()).getString()));
         }
         if (operationData.get(OperationConfigHeader.EXPECT_FAILURE.getExcelHeader()) != null) {
-            operation.setFailureExpected(operationData.get(OperationConfigHeader.EXPECT_FAILURE.getExcelHeader()).getValue());
+            operation.setFailureExpected(stringPool.get(operationData.get(OperationConfigHeader.EXPECT_FAILURE.getExcelHeader()).getString()));
         }
         if (operationData.get(OperationConfigHeader.IS_CRITICAL.getExcelHeader()) != null) {
-            operation.setCritical(operationData.get(OperationConfigHeader.IS_CRITICAL.getExcelHeader()).getValue());
+            operation.setCritical(stringPool.get(operationData.get(OperationConfigHeader.IS_CRITICAL.getExcelHeader()).getString()));
         }
         if (operationData.get(OperationConfigHeader.REPEAT_OP_RANGE.getExcelHeader()) != null) {
-            operation.setRepeatRange(operationData.get(OperationConfigHeader.REPEAT_OP_RANGE.getExcelHeader()).getValue());
+            operation.setRepeatRange(stringPool.get(operationData.get(OperationConfigHeader.REPEAT_OP_RANGE.getExcelHeader()).getString()));
         }
         final List<OperationData> data = new ArrayList<>();
-        for (final Map.Entry<String, CellWrapper> entry : operationData.entrySet()) {
+        for (final Map.Entry<String, CellValue> entry : operationData.entrySet()) {
             if (entry.getKey().startsWith(OperationConfigHeader.PREFIX)) {
                 continue;
             }
             final OperationData opData = new OperationData();
-            opData.setAttribute(entry.getKey());
-            opData.setValue(Collections.singletonList(entry.getValue().getValue()));
-            if (entry.getValue().cell.getCellType() == CellType.FORMULA) {
+            opData.setAttribute(stringPool.get(entry.getKey()));
+            opData.setValue(Collections.singletonList(stringPool.getValue(entry.getValue().getString())));
+            if (entry.getValue().getType() == CellType.FORMULA) {
                 if (opData.getMeta() == null) {
                     opData.setMeta(new ArrayList<>());
                 }
@@ -441,12 +566,21 @@ public class ExcelParser {
 
     @Value
     private static class RowGroups {
+        List<Row> delimiterRows;
         List<Row> testDetailsRows;
         List<Row> connectorRows;
         List<Row> operationRows;
         List<Row> unknownRows;
     }
 
+    @Value
+    private static class SheetHeader {
+        RowGroups rowGroups;
+        TestDetails testDetails;
+        FirstRowHeaders firstRowHeaders;
+        Map<String, List<CellValue>> connectorAttributesMap;
+    }
+
     @Value
     private static class TestDetails {
         String title;
@@ -455,16 +589,7 @@ public class ExcelParser {
 
     @Value
     private static class FirstRowHeaders {
-        List<CellWrapper> operationConfigHeaders;
-        List<CellWrapper> defaultConnectorAttributes;
-    }
-
-    @Value
-    private static class CellWrapper {
-        Cell cell;
-
-        public String getValue() {
-            return ExcelUtils.parseCellAsString(cell);
-        }
+        List<CellValue> operationConfigHeaders;
+        List<CellValue> defaultConnectorAttributes;
     }
 }
@@ -33,9 +33,11 @@ import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Locale;
@@ -43,35 +45,55 @@ import java.util.Locale;
 public class ExcelUtils {
 
     public static Workbook loadWorkbook(Path workbookPath) throws IOException {
+        return loadWorkbook(workbookPath, Files.newInputStream(workbookPath));
+    }
+
+    /**
+     * Loads a workbook from a stream of the file at the path, which only tells the format of the workbook.
+     */
+    public static Workbook loadWorkbook(Path workbookPath, InputStream inputStream) throws IOException {
         if (workbookPath.toString().toLowerCase(Locale.ROOT).endsWith(".xlsx")) {
-            return new XSSFWorkbook(Files.newInputStream(workbookPath));
+            return new XSSFWorkbook(inputStream);
         }
-        return new HSSFWorkbook(Files.newInputStream(workbookPath));
+        return new HSSFWorkbook(inputStream);
     }
 
     public static Workbook createWorkbook(Path workbookPath) {
+        return createWorkbook(workbookPath, 0);
+    }
+
+    /**
+     * @param rowWindow the number of rows of each sheet of an .xlsx workbook to keep in memory, writing the rows before
+     *                  them to compressed temporary files, or 0 to keep every row
+     */
+    public static Workbook createWorkbook(Path workbookPath, int rowWindow) {
         if (workbookPath.toString().endsWith(".xlsx")) {
-            return new XSSFWorkbook();
+            return rowWindow > 0 ? new SXSSFWorkbook(null, rowWindow, true) : new XSSFWorkbook();
         }
         return new HSSFWorkbook();
     }
 
-    public static String parseCellAsString(Cell cell) {
-        switch (cell.getCellType()) {
-            case STRING:
-                return cell.getStringCellValue();
-            case NUMERIC:
-                // This is written these ways to match the IdmUnit Core parser
-                return Integer.toString(Double.valueOf(cell.getNumericCellValue()).intValue());
-            case BOOLEAN:
-                return String.valueOf(cell.getBooleanCellValue());
-            case FORMULA:
-                return cell.getCellFormula();
-            case BLANK:
-                return "";
-            default:
-                throw new UnsupportedOperationException(String.format("Cannot parse cell %s as string", cell.getAddress()));
+    /**
+     * Deletes the temporary files of a workbook that writes its rows to them, which closing it does not.
+     */
+    public static void deleteTemporaryFiles(Workbook workbook) {
+        if (workbook instanceof SXSSFWorkbook) {
+            ((SXSSFWorkbook) workbook).dispose();
+        }
+    }
+
+    public static String getEngine(Workbook workbook) {
+        if (workbook instanceof HSSFWorkbook) {
+            return "HSSF";
+        }
+        if (workbook instanceof SXSSFWorkbook) {
+            return "SXSSF";
         }
+        return "XSSF";
+    }
+
+    public static String parseCellAsString(Cell cell) {
+        return CellValue.toString(cell);
     }
 
     public static Cell getCellOrBlank(Row row, int colIndex) {
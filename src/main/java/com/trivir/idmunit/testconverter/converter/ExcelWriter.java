@@ -34,6 +34,7 @@ import org.apache.poi.ss.usermodel.*;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public class ExcelWriter {
 
@@ -44,6 +45,8 @@ public class ExcelWriter {
     private Sheet sheet = null;
     private IdmUnitTest idmUnitTest = null;
     private int nextRow = 0;
+    private Row lastRow = null;
+    private Consumer<Row> rowListener = row -> { };
     private int maxAttrSize = 0;
     private final Map<String, Map<String, Integer>> connectorAttrIndices = new LinkedHashMap<>();
     private CellStyle titleCellStyle = null;
@@ -60,6 +63,16 @@ public class ExcelWriter {
     }
 
     public void writeTest(IdmUnitTest idmTest) {
+        startTest(idmTest);
+        idmTest.getOperations().forEach(this::writeOperation);
+        finishTest();
+    }
+
+    /**
+     * Creates the sheet of a test and writes the rows above its operations, without looking at the operations, which
+     * are then written one by one with {@link #writeOperation(Operation)} before calling {@link #finishTest()}.
+     */
+    public void startTest(IdmUnitTest idmTest) {
         idmUnitTest = idmTest;
         numOperationConfigHeaders = 7;
         if (idmUnitTest.getHasIsCriticalConfigHeader() != null) {
@@ -83,14 +96,19 @@ public class ExcelWriter {
         writeFirstHeaderRow();
         idmUnitTest.getConnectors().forEach(this::writeTarget);
         writeDelimiterRow();
-        idmUnitTest.getOperations().forEach(operation -> {
-            if (operation.getOperation().trim().equals("comment")) {
-                writeCommentRow(operation);
-            } else {
-                writeOperation(operation);
-            }
-        });
+    }
+
+    public void writeOperation(Operation operation) {
+        if (operation.getOperation().trim().equals("comment")) {
+            writeCommentRow(operation);
+        } else {
+            writeOperationRow(operation);
+        }
+    }
+
+    public void finishTest() {
         writeDelimiterRow();
+        finishRow();
 
         for (int column = 0; column < getNumColumns(); column++) {
             double columnWidth;
@@ -110,6 +128,7 @@ public class ExcelWriter {
             sheet.setColumnWidth(i, 35 * EXCEL_WIDTH_CONSTANT);
         }
         sheet = null;
+        idmUnitTest = null;
         nextRow = 0;
         maxAttrSize = 0;
     }
@@ -167,6 +186,27 @@ public class ExcelWriter {
         borderedCellStyle.setBorderRight(BorderStyle.THIN);
     }
 
+    /**
+     * Calls the listener with every row once it is written, before the next row is created, so that it gets each row
+     * while a workbook that only keeps a window of rows in memory still has it.
+     */
+    public void setRowListener(Consumer<Row> rowListener) {
+        this.rowListener = rowListener;
+    }
+
+    private Row createRow() {
+        finishRow();
+        lastRow = sheet.createRow(nextRow++);
+        return lastRow;
+    }
+
+    private void finishRow() {
+        if (lastRow != null) {
+            rowListener.accept(lastRow);
+            lastRow = null;
+        }
+    }
+
     private int getNumColumns() {
         return numOperationConfigHeaders + maxAttrSize + 1;
     }
@@ -182,15 +222,19 @@ public class ExcelWriter {
         }
     }
 
-    private void writePaddingCellsFrom(int startingIndex, Row row, CellStyle cellStyle) {
+    // Returns the cells of the row by column, so that they are written without looking them up in the row
+    private Cell[] writePaddingCellsFrom(int startingIndex, Row row, CellStyle cellStyle) {
+        Cell[] cells = new Cell[getNumColumns()];
         for (int i = startingIndex; i < getNumColumns(); i++) {
             Cell paddingCell = row.createCell(i, CellType.BLANK);
             paddingCell.setCellStyle(cellStyle);
+            cells[i] = paddingCell;
         }
+        return cells;
     }
 
     private void writeTitle(String title) {
-        Row titleRow = sheet.createRow(nextRow++);
+        Row titleRow = createRow();
         titleRow.setHeightInPoints(2 * sheet.getDefaultRowHeightInPoints());
 
         Cell cell = titleRow.createCell(0, CellType.STRING);
@@ -199,7 +243,7 @@ public class ExcelWriter {
     }
 
     private void writeDescription(String desc) {
-        Row descRow = sheet.createRow(nextRow++);
+        Row descRow = createRow();
         descRow.setHeightInPoints(sheet.getDefaultRowHeightInPoints());
 
         Cell cell = descRow.createCell(0, CellType.STRING);
@@ -208,51 +252,51 @@ public class ExcelWriter {
     }
 
     private void writeDelimiterRow() {
-        Row delimiterRow = sheet.createRow(nextRow++);
+        Row delimiterRow = createRow();
         delimiterRow.setHeightInPoints(sheet.getDefaultRowHeightInPoints());
 
-        writePaddingCellsFrom(0, delimiterRow, delimiterCellStyle);
+        Cell[] cells = writePaddingCellsFrom(0, delimiterRow, delimiterCellStyle);
 
-        Cell cell = delimiterRow.getCell(0);
+        Cell cell = cells[0];
         cell.setCellValue("---");
     }
 
     private void writeFirstHeaderRow() {
-        Row firstHeaderRow = sheet.createRow(nextRow++);
+        Row firstHeaderRow = createRow();
         firstHeaderRow.setHeightInPoints(sheet.getDefaultRowHeightInPoints());
 
-        writePaddingCellsFrom(0, firstHeaderRow, connectorAttrHeaderStyle);
+        Cell[] cells = writePaddingCellsFrom(0, firstHeaderRow, connectorAttrHeaderStyle);
 
-        Cell commentCell = firstHeaderRow.getCell(0);
+        Cell commentCell = cells[0];
         commentCell.setCellValue(OperationConfigHeader.COMMENT.getExcelHeader());
         commentCell.setCellStyle(opConfigHeaderStyle);
 
-        Cell operationCell = firstHeaderRow.getCell(1);
+        Cell operationCell = cells[1];
         operationCell.setCellValue(OperationConfigHeader.OPERATION.getExcelHeader());
         operationCell.setCellStyle(opConfigHeaderStyle);
 
-        Cell targetCell = firstHeaderRow.getCell(2);
+        Cell targetCell = cells[2];
         targetCell.setCellValue(OperationConfigHeader.TARGET.getExcelHeader());
         targetCell.setCellStyle(opConfigHeaderStyle);
 
-        Cell waitIntervalCell = firstHeaderRow.getCell(3);
+        Cell waitIntervalCell = cells[3];
         waitIntervalCell.setCellValue(OperationConfigHeader.WAIT_INTERVAL.getExcelHeader());
         waitIntervalCell.setCellStyle(opConfigHeaderStyle);
 
-        Cell retryCountCell = firstHeaderRow.getCell(4);
+        Cell retryCountCell = cells[4];
         retryCountCell.setCellValue(OperationConfigHeader.RETRY_COUNT.getExcelHeader());
         retryCountCell.setCellStyle(opConfigHeaderStyle);
 
-        Cell disableStepCell = firstHeaderRow.getCell(5);
+        Cell disableStepCell = cells[5];
         disableStepCell.setCellValue(OperationConfigHeader.DISABLE_STEP.getExcelHeader());
         disableStepCell.setCellStyle(opConfigHeaderStyle);
 
-        Cell expectFailureCell = firstHeaderRow.getCell(6);
+        Cell expectFailureCell = cells[6];
         expectFailureCell.setCellValue(OperationConfigHeader.EXPECT_FAILURE.getExcelHeader());
         expectFailureCell.setCellStyle(opConfigHeaderStyle);
 
         if (idmUnitTest.getHasIsCriticalConfigHeader() != null) {
-            Cell isCriticalCell = firstHeaderRow.getCell(7);
+            Cell isCriticalCell = cells[7];
             isCriticalCell.setCellValue(OperationConfigHeader.IS_CRITICAL.getExcelHeader());
             isCriticalCell.setCellStyle(opConfigHeaderStyle);
         }
@@ -260,9 +304,9 @@ public class ExcelWriter {
         if (idmUnitTest.getHasRepeatOpRangeConfigHeader() != null) {
             Cell repeatOpRangeCell;
             if (idmUnitTest.getHasIsCriticalConfigHeader() == null) {
-                repeatOpRangeCell = firstHeaderRow.getCell(7);
+                repeatOpRangeCell = cells[7];
             } else {
-                repeatOpRangeCell = firstHeaderRow.getCell(8);
+                repeatOpRangeCell = cells[8];
             }
             repeatOpRangeCell.setCellValue(OperationConfigHeader.REPEAT_OP_RANGE.getExcelHeader());
             repeatOpRangeCell.setCellStyle(opConfigHeaderStyle);
@@ -270,58 +314,58 @@ public class ExcelWriter {
     }
 
     private void writeTarget(Connector connector) {
-        Row targetRow = sheet.createRow(nextRow++);
+        Row targetRow = createRow();
         targetRow.setHeightInPoints(sheet.getDefaultRowHeightInPoints());
 
-        writePaddingCellsFrom(0, targetRow, connectorAttrHeaderStyle);
+        Cell[] cells = writePaddingCellsFrom(0, targetRow, connectorAttrHeaderStyle);
 
-        Cell commentCell = targetRow.getCell(0);
+        Cell commentCell = cells[0];
         commentCell.setCellStyle(opConfigHeaderStyle);
 
-        Cell operationCell = targetRow.getCell(1);
+        Cell operationCell = cells[1];
         operationCell.setCellStyle(opConfigHeaderStyle);
 
-        Cell targetCell = targetRow.getCell(2);
+        Cell targetCell = cells[2];
         targetCell.setCellValue(connector.getName());
         targetCell.setCellStyle(opConfigHeaderStyle);
 
-        Cell waitIntervalCell = targetRow.getCell(3);
+        Cell waitIntervalCell = cells[3];
         waitIntervalCell.setCellStyle(opConfigHeaderStyle);
 
-        Cell retryCountCell = targetRow.getCell(4);
+        Cell retryCountCell = cells[4];
         retryCountCell.setCellStyle(opConfigHeaderStyle);
 
-        Cell disableStepCell = targetRow.getCell(5);
+        Cell disableStepCell = cells[5];
         disableStepCell.setCellStyle(opConfigHeaderStyle);
 
-        Cell expectFailureCell = targetRow.getCell(6);
+        Cell expectFailureCell = cells[6];
         expectFailureCell.setCellStyle(opConfigHeaderStyle);
 
         if (idmUnitTest.getHasIsCriticalConfigHeader() != null) {
-            Cell isCriticalCell = targetRow.getCell(7);
+            Cell isCriticalCell = cells[7];
             isCriticalCell.setCellStyle(opConfigHeaderStyle);
         }
 
         if (idmUnitTest.getHasRepeatOpRangeConfigHeader() != null) {
             Cell repeatOpRangeCell;
             if (idmUnitTest.getHasIsCriticalConfigHeader() == null) {
-                repeatOpRangeCell = targetRow.getCell(7);
+                repeatOpRangeCell = cells[7];
             } else {
-                repeatOpRangeCell = targetRow.getCell(8);
+                repeatOpRangeCell = cells[8];
             }
             repeatOpRangeCell.setCellStyle(opConfigHeaderStyle);
         }
 
         for (int i = 0; i < connector.getAttributes().size(); i++) {
             ConnectorAttribute attr = connector.getAttributes().get(i);
-            Cell attrCell = targetRow.getCell(connectorAttrIndices.get(connector.getName()).get(attr.getName()));
+            Cell attrCell = cells[connectorAttrIndices.get(connector.getName()).get(attr.getName())];
             attrCell.setCellStyle(connectorAttrHeaderStyle);
             attrCell.setCellValue(attr.getName());
         }
     }
 
     private void writeCommentRow(Operation operation) {
-        Row commentRow = sheet.createRow(nextRow++);
+        Row commentRow = createRow();
         commentRow.setHeightInPoints(sheet.getDefaultRowHeightInPoints());
 
         Cell commentCell = commentRow.createCell(0, CellType.STRING);
@@ -335,51 +379,51 @@ public class ExcelWriter {
         writePaddingCellsFrom(2, commentRow, commentCellStyle);
     }
 
-    private void writeOperation(Operation operation) {
-        Row operationRow = sheet.createRow(nextRow++);
+    private void writeOperationRow(Operation operation) {
+        Row operationRow = createRow();
         operationRow.setHeightInPoints(sheet.getDefaultRowHeightInPoints());
 
-        writePaddingCellsFrom(0, operationRow, borderedCellStyle);
+        Cell[] cells = writePaddingCellsFrom(0, operationRow, borderedCellStyle);
 
-        Cell commentCell = operationRow.getCell(0);
+        Cell commentCell = cells[0];
         commentCell.setCellValue(operation.getComment());
         commentCell.setCellStyle(borderedCellStyle);
 
-        Cell operationCell = operationRow.getCell(1);
+        Cell operationCell = cells[1];
         operationCell.setCellValue(operation.getOperation());
         operationCell.setCellStyle(borderedCellStyle);
 
-        Cell targetCell = operationRow.getCell(2);
+        Cell targetCell = cells[2];
         targetCell.setCellValue(operation.getTarget());
         targetCell.setCellStyle(borderedCellStyle);
 
-        Cell waitIntervalCell = operationRow.getCell(3);
+        Cell waitIntervalCell = cells[3];
         waitIntervalCell.setCellValue(operation.getWaitInterval());
         waitIntervalCell.setCellStyle(borderedCellStyle);
 
-        Cell retryCountCell = operationRow.getCell(4);
+        Cell retryCountCell = cells[4];
         retryCountCell.setCellValue(operation.getRetryCount());
         retryCountCell.setCellStyle(borderedCellStyle);
 
-        Cell disableStepCell = operationRow.getCell(5);
+        Cell disableStepCell = cells[5];
         disableStepCell.setCellValue(operation.getDisabled());
         disableStepCell.setCellStyle(borderedCellStyle);
 
-        Cell expectFailureCell = operationRow.getCell(6);
+        Cell expectFailureCell = cells[6];
         expectFailureCell.setCellValue(operation.getFailureExpected());
         expectFailureCell.setCellStyle(borderedCellStyle);
 
         if (idmUnitTest.getHasIsCriticalConfigHeader() != null) {
-            Cell isCriticalCell = operationRow.getCell(7);
+            Cell isCriticalCell = cells[7];
             isCriticalCell.setCellStyle(borderedCellStyle);
         }
 
         if (idmUnitTest.getHasRepeatOpRangeConfigHeader() != null) {
             Cell repeatOpRangeCell;
             if (idmUnitTest.getHasIsCriticalConfigHeader() == null) {
-                repeatOpRangeCell = operationRow.getCell(7);
+                repeatOpRangeCell = cells[7];
             } else {
-                repeatOpRangeCell = operationRow.getCell(8);
+                repeatOpRangeCell = cells[8];
             }
             repeatOpRangeCell.setCellStyle(borderedCellStyle);
         }
@@ -397,7 +441,7 @@ public class ExcelWriter {
             if (index == null) {
                 throw new RuntimeException("Operation data for undefined target attribute specified");
             }
-            Cell dataCell = operationRow.getCell(index);
+            Cell dataCell = cells[index];
             dataCell.setCellStyle(borderedCellStyle);
             if (operation.getData().get(i).getMeta() != null && operation.getData().get(i).getMeta().contains("excel:isFormula")) {
                 dataCell.setCellFormula(operation.getData().get(i).getValue().get(0));
@@ -0,0 +1,171 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.converter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.trivir.idmunit.testconverter.converter.model.Connector;
+import com.trivir.idmunit.testconverter.converter.model.IdmUnitTest;
+import com.trivir.idmunit.testconverter.converter.model.OperationConfigHeader;
+import com.trivir.idmunit.testconverter.util.JsonUtils;
+import org.apache.poi.ss.usermodel.CellType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a test as schema 1.0 JSON while its sheet is parsed, without building an {@link IdmUnitTest}. The bytes are
+ * the same as serializing the test that {@link ExcelParser#parseSheet} would return.
+ * <p>
+ * The connectors come before the operations in a test, but the connectors inferred from the targets of the operations
+ * are only known once every operation is parsed. The operations are written to a buffer of their own as they are
+ * parsed, nested as they are in the test, and the buffer is copied into the test after the connectors.
+ */
+class JsonTranscoder {
+
+    // The fields of Operation, in the order Jackson writes them
+    private static final Map<OperationConfigHeader, String> OPERATION_FIELDS = new EnumMap<>(OperationConfigHeader.class);
+    static {
+        OPERATION_FIELDS.put(OperationConfigHeader.COMMENT, "comment");
+        OPERATION_FIELDS.put(OperationConfigHeader.OPERATION, "operation");
+        OPERATION_FIELDS.put(OperationConfigHeader.TARGET, "target");
+        OPERATION_FIELDS.put(OperationConfigHeader.WAIT_INTERVAL, "waitInterval");
+        OPERATION_FIELDS.put(OperationConfigHeader.RETRY_COUNT, "retryCount");
+        OPERATION_FIELDS.put(OperationConfigHeader.DISABLE_STEP, "disabled");
+        OPERATION_FIELDS.put(OperationConfigHeader.EXPECT_FAILURE, "failureExpected");
+        OPERATION_FIELDS.put(OperationConfigHeader.IS_CRITICAL, "critical");
+        OPERATION_FIELDS.put(OperationConfigHeader.REPEAT_OP_RANGE, "repeatRange");
+    }
+
+    private final boolean pretty;
+    private final ByteArrayOutputStream operationsStream = new ByteArrayOutputStream();
+    private final JsonGenerator operationsGenerator;
+
+    /**
+     * @param pretty whether to indent like {@link TestSchema#write}, or to write one line like {@link TestSchema#writeLine}
+     */
+    JsonTranscoder(boolean pretty) {
+        this.pretty = pretty;
+        try {
+            operationsGenerator = createGenerator(operationsStream);
+            // Opens the object the operations are in, so that they are indented as deep as they are in the test
+            operationsGenerator.writeStartObject();
+            operationsGenerator.writeArrayFieldStart("operations");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes an operation as the parser maps the cells of its row.
+     */
+    void writeOperation(Map<String, CellValue> operationData) {
+        try {
+            JsonGenerator generator = operationsGenerator;
+            generator.writeStartObject();
+            for (Map.Entry<OperationConfigHeader, String> field : OPERATION_FIELDS.entrySet()) {
+                CellValue value = operationData.get(field.getKey().getExcelHeader());
+                if (value != null) {
+                    generator.writeStringField(field.getValue(), value.getString());
+                }
+            }
+            boolean hasData = false;
+            for (Map.Entry<String, CellValue> entry : operationData.entrySet()) {
+                if (entry.getKey().startsWith(OperationConfigHeader.PREFIX)) {
+                    continue;
+                }
+                if (!hasData) {
+                    generator.writeArrayFieldStart("data");
+                    hasData = true;
+                }
+                generator.writeStartObject();
+                generator.writeStringField("attribute", entry.getKey());
+                generator.writeArrayFieldStart("value");
+                generator.writeString(entry.getValue().getString());
+                generator.writeEndArray();
+                if (entry.getValue().getType() == CellType.FORMULA) {
+                    generator.writeArrayFieldStart("meta");
+                    generator.writeString("excel:isFormula");
+                    generator.writeEndArray();
+                }
+                generator.writeEndObject();
+            }
+            if (hasData) {
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes the test around the operations written so far.
+     */
+    byte[] finish(String name, String title, String desc, Map<Integer, Float> columnWidths, List<Connector> connectors,
+                  boolean hasIsCriticalConfigHeader, boolean hasRepeatOpRangeConfigHeader) {
+        try {
+            operationsGenerator.writeEndArray();
+            operationsGenerator.flush();
+            byte[] operations = operationsStream.toByteArray();
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(operations.length + 4096);
+            try (JsonGenerator generator = createGenerator(outputStream)) {
+                generator.writeStartObject();
+                generator.writeStringField("name", name);
+                generator.writeStringField("title", title);
+                generator.writeStringField("desc", desc);
+                generator.writeFieldName("columnWidths");
+                JsonUtils.getMapper().writeValue(generator, columnWidths);
+                generator.writeFieldName("connectors");
+                JsonUtils.getMapper().writeValue(generator, connectors);
+                // The buffer starts with the brace of the object it opened, which is replaced by the separator of the
+                // field before it
+                generator.writeRaw(',');
+                generator.flush();
+                outputStream.write(operations, 1, operations.length - 1);
+                if (hasIsCriticalConfigHeader) {
+                    generator.writeBooleanField("hasIsCriticalConfigHeader", true);
+                }
+                if (hasRepeatOpRangeConfigHeader) {
+                    generator.writeBooleanField("hasRepeatOpRangeConfigHeader", true);
+                }
+                generator.writeEndObject();
+            }
+            return outputStream.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private JsonGenerator createGenerator(ByteArrayOutputStream outputStream) throws IOException {
+        return (pretty ? JsonUtils.getWriter() : JsonUtils.getMapper().writer()).createGenerator(outputStream);
+    }
+}
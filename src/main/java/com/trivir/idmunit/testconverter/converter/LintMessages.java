@@ -126,6 +126,18 @@ public class LintMessages {
         warnings.add(String.format("Row %s should be blank as it is after the final section delimiter, but cell %s is not blank; it will not be included", cell.getRowIndex() + 1, cellLogValue(cell)));
     }
 
+    public IdmUnitTestConverterException errorSheetRowBudgetExceeded(Row row, int maxRows) {
+        return new IdmUnitTestConverterException(String.format("Stopped reading this sheet at row %s as it contains more than %s rows, most likely formatted but blank; delete the unused rows or raise the row limit.", row.getRowNum() + 1, maxRows));
+    }
+
+    public IdmUnitTestConverterException errorSheetCellBudgetExceeded(Row row, long maxCells) {
+        return new IdmUnitTestConverterException(String.format("Stopped reading this sheet at row %s as it contains more than %s cells, most likely formatted but blank; delete the unused rows and columns or raise the cell limit.", row.getRowNum() + 1, maxCells));
+    }
+
+    public IdmUnitTestConverterException errorSheetTimeBudgetExceeded(Row row, long maxSeconds) {
+        return new IdmUnitTestConverterException(String.format("Stopped reading this sheet at row %s as it took more than %s seconds; delete any unused rows and columns or raise the time limit.", row.getRowNum() + 1, maxSeconds));
+    }
+
     private String cellLogValue(Cell cell) {
         if (!includeCellValue) {
             return cell.getAddress().toString();
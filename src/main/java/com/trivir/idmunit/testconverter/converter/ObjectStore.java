@@ -0,0 +1,229 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.converter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.trivir.idmunit.testconverter.converter.model.IdmUnitTest;
+import com.trivir.idmunit.testconverter.converter.model.SharedConnectors;
+import com.trivir.idmunit.testconverter.util.FilesUtils;
+import com.trivir.idmunit.testconverter.util.HashUtils;
+import com.trivir.idmunit.testconverter.util.JsonUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * A directory that keeps every sheet once, in a file named after the SHA-256 hash of its content, so that sheets that
+ * are the same in several workbooks, or in several runs, are stored once. The manifest of a bundle whose sheets are in
+ * the store names the hash of each sheet, and the path of the store relative to the directory the bundle is in.
+ * Sheets are stored in the same form whatever the bundle, JSON on a single line or a binary encoding, so the hash of a
+ * sheet only depends on its schema and encoding.
+ * <p>
+ * Objects are never changed once written, and are not removed when no manifest refers to them any more.
+ */
+public class ObjectStore {
+
+    public static final String OBJECT_STORE_KEY = "objectStore";
+    public static final String OBJECTS_KEY = "objects";
+
+    private final Path path;
+
+    public ObjectStore(Path path) {
+        this.path = path;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    // Objects are spread over subdirectories named after the first two digits of their hash, as git does, so that no
+    // directory grows too large to list
+    public Path getObjectPath(String hash) {
+        return path.resolve(hash.substring(0, 2)).resolve(hash + TestBundle.SHEET_FILE_EXTENSION);
+    }
+
+    public boolean contains(String hash) {
+        return Files.isRegularFile(getObjectPath(hash));
+    }
+
+    /**
+     * Stores the content unless the store already has it.
+     *
+     * @return the hash of the content
+     */
+    public String put(byte[] content) throws IOException {
+        String hash = HashUtils.sha256(content);
+        if (!contains(hash)) {
+            Path objectPath = getObjectPath(hash);
+            Files.createDirectories(objectPath.getParent());
+            try {
+                FilesUtils.writeAtomically(objectPath, content);
+            } catch (FileAlreadyExistsException e) {
+                // Another workbook stored the same content at the same time
+            }
+        }
+        return hash;
+    }
+
+    public InputStream open(String hash) throws IOException {
+        return Files.newInputStream(getObjectPath(hash));
+    }
+
+    /**
+     * Wraps the writer of a bundle so that its sheets are put in this store, and only the manifest, which is written
+     * when the writer is closed, goes into the bundle.
+     */
+    public TestBundle.Writer createWriter(TestBundle.Writer bundleWriter, Path bundlePath, TestSchema schema, TestEncoding encoding, SharedConnectors shared) {
+        Path bundleDirectory = bundlePath.toAbsolutePath().normalize().getParent();
+        String relativePath = bundleDirectory.relativize(path.toAbsolutePath().normalize()).toString();
+        return new Writer(bundleWriter, relativePath.replace(File.separatorChar, '/'), schema, encoding, shared);
+    }
+
+    /**
+     * Opens the bundle at the path, reading its sheets from the object store its manifest points at, if any.
+     */
+    public static TestBundle.Reader openBundle(Path bundlePath) throws IOException {
+        TestBundle.Reader bundleReader = TestBundle.fromPath(bundlePath).openReader(bundlePath);
+        try {
+            JsonNode manifestNode;
+            try (InputStream inputStream = bundleReader.openManifest()) {
+                manifestNode = JsonUtils.getMapper().readTree(TestEncoding.createParser(inputStream));
+            }
+            JsonNode storeNode = manifestNode.get(OBJECT_STORE_KEY);
+            if (storeNode == null) {
+                return bundleReader;
+            }
+            ObjectStore store = new ObjectStore(bundlePath.toAbsolutePath().normalize().getParent().resolve(storeNode.asText()));
+            return store.new Reader(bundleReader, bundlePath, manifestNode.path(OBJECTS_KEY));
+        } catch (IOException | RuntimeException e) {
+            bundleReader.close();
+            throw e;
+        }
+    }
+
+    private class Writer implements TestBundle.Writer {
+
+        private final TestBundle.Writer bundleWriter;
+        private final String relativePath;
+        private final TestSchema schema;
+        private final TestEncoding encoding;
+        private final SharedConnectors shared;
+        private ObjectNode manifest;
+        private final ObjectNode objects = JsonUtils.getMapper().createObjectNode();
+
+        Writer(TestBundle.Writer bundleWriter, String relativePath, TestSchema schema, TestEncoding encoding, SharedConnectors shared) {
+            this.bundleWriter = bundleWriter;
+            this.relativePath = relativePath;
+            this.schema = schema;
+            this.encoding = encoding;
+            this.shared = shared;
+        }
+
+        // JSON objects are always written on one line rather than the way the bundle writes its files, so that a sheet
+        // has the same hash whatever the bundle. The binary encodings only have one form.
+        @Override
+        public byte[] serialize(IdmUnitTest test) throws IOException {
+            return encoding == TestEncoding.JSON ? schema.writeLine(test, shared) : schema.write(test, encoding, shared);
+        }
+
+        @Override
+        public void writeManifest(JsonNode manifest) {
+            this.manifest = manifest.deepCopy();
+        }
+
+        @Override
+        public void writeSheet(String sheetName, byte[] content) throws IOException {
+            if (manifest == null) {
+                throw new IllegalStateException("The manifest must be written before the sheets.");
+            }
+            objects.put(sheetName, put(content));
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (manifest != null) {
+                    manifest.put(OBJECT_STORE_KEY, relativePath);
+                    manifest.set(OBJECTS_KEY, objects);
+                    bundleWriter.writeManifest(manifest);
+                }
+            } finally {
+                bundleWriter.close();
+            }
+        }
+    }
+
+    private class Reader implements TestBundle.Reader {
+
+        private final TestBundle.Reader bundleReader;
+        private final Path bundlePath;
+        private final JsonNode objects;
+
+        Reader(TestBundle.Reader bundleReader, Path bundlePath, JsonNode objects) {
+            this.bundleReader = bundleReader;
+            this.bundlePath = bundlePath;
+            this.objects = objects;
+        }
+
+        @Override
+        public InputStream openManifest() throws IOException {
+            return bundleReader.openManifest();
+        }
+
+        @Override
+        public InputStream openSheet(String sheetName) throws IOException {
+            return open(getSheetHash(sheetName));
+        }
+
+        @Override
+        public long getSheetSize(String sheetName) throws IOException {
+            return Files.size(getObjectPath(getSheetHash(sheetName)));
+        }
+
+        @Override
+        public String getSheetHash(String sheetName) throws IOException {
+            JsonNode hashNode = objects.get(sheetName);
+            if (hashNode == null) {
+                throw new NoSuchFileException(bundlePath.toString(), null, String.format("No object for sheet '%s'", sheetName));
+            }
+            return hashNode.asText();
+        }
+
+        @Override
+        public void close() throws IOException {
+            bundleReader.close();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.converter;
+
+import lombok.Value;
+
+/**
+ * Limits on how much of a single sheet the parser may read before it gives up on the sheet, so that a sheet formatted
+ * down to the last row or across to the last column fails with a lint error instead of stalling the whole run.
+ * A limit of 0 disables it.
+ */
+@Value
+public class SheetScanBudget {
+
+    // Large sheets are legitimate, and the rows formatted below the data are already cut short by the trailing blank
+    // rows, so the rows and cells are only limited on request. A dense sheet of tens of thousands of operations across
+    // hundreds of columns holds millions of cells; the time limit is what stops the sheets that really stall.
+    public static final int DEFAULT_MAX_ROWS = 0;
+    public static final long DEFAULT_MAX_CELLS = 0;
+    public static final long DEFAULT_MAX_SECONDS = 120;
+    public static final int DEFAULT_MAX_TRAILING_BLANK_ROWS = 1_000;
+
+    public static final SheetScanBudget DEFAULT = new SheetScanBudget(DEFAULT_MAX_ROWS, DEFAULT_MAX_CELLS, DEFAULT_MAX_SECONDS, DEFAULT_MAX_TRAILING_BLANK_ROWS);
+
+    // Rows that exist in the file, blank or not
+    int maxRows;
+    // Cells that exist in the file, blank or not
+    long maxCells;
+    long maxSeconds;
+    // After the last section delimiter, this many blank rows in a row are taken as the end of the sheet's data
+    int maxTrailingBlankRows;
+}
@@ -0,0 +1,358 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.converter;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeType;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.trivir.idmunit.testconverter.converter.model.Connector;
+import com.trivir.idmunit.testconverter.converter.model.ConnectorAttribute;
+import com.trivir.idmunit.testconverter.converter.model.IdmUnitTest;
+import com.trivir.idmunit.testconverter.converter.model.Operation;
+import com.trivir.idmunit.testconverter.converter.model.OperationData;
+import com.trivir.idmunit.testconverter.converter.model.SharedConnectors;
+import com.trivir.idmunit.testconverter.converter.model.StringPool;
+import com.trivir.idmunit.testconverter.util.JsonUtils;
+import lombok.AllArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Maps tests to and from the layout of schema version 2.0. The test details and connectors are written as in 1.0, but
+ * the operations are a table: "operationColumns" lists the keys of the columns that any operation of the sheet uses,
+ * and each operation is an array of its values in that order, without trailing nulls. Each operation data item is an
+ * array of the index of its attribute in the target connector, its values and, if it has any, its meta. Attributes
+ * that the target connector does not define are referred to by name instead.
+ */
+class TabularTests {
+
+    static final String OPERATION_COLUMNS_KEY = "operationColumns";
+
+    private static final String NAME_KEY = "name";
+    private static final String TITLE_KEY = "title";
+    private static final String DESC_KEY = "desc";
+    private static final String COLUMN_WIDTHS_KEY = "columnWidths";
+    private static final String CONNECTORS_KEY = "connectors";
+    private static final String OPERATIONS_KEY = "operations";
+    private static final String HAS_IS_CRITICAL_KEY = "hasIsCriticalConfigHeader";
+    private static final String HAS_REPEAT_OP_RANGE_KEY = "hasRepeatOpRangeConfigHeader";
+
+    @AllArgsConstructor
+    private enum Column {
+        COMMENT("comment", Operation::getComment, Operation::setComment),
+        OPERATION("operation", Operation::getOperation, Operation::setOperation),
+        TARGET("target", Operation::getTarget, Operation::setTarget),
+        WAIT_INTERVAL("waitInterval", Operation::getWaitInterval, Operation::setWaitInterval),
+        RETRY_COUNT("retryCount", Operation::getRetryCount, Operation::setRetryCount),
+        DISABLED("disabled", Operation::getDisabled, Operation::setDisabled),
+        FAILURE_EXPECTED("failureExpected", Operation::getFailureExpected, Operation::setFailureExpected),
+        CRITICAL("critical", Operation::getCritical, Operation::setCritical),
+        REPEAT_RANGE("repeatRange", Operation::getRepeatRange, Operation::setRepeatRange),
+        DATA("data", null, null),
+        META("meta", null, null);
+
+        private final String key;
+        private final Function<Operation, String> getter;
+        private final BiConsumer<Operation, String> setter;
+
+        boolean isUsedBy(Operation operation) {
+            switch (this) {
+                case DATA:
+                    return operation.getData() != null;
+                case META:
+                    return operation.getMeta() != null;
+                default:
+                    return getter.apply(operation) != null;
+            }
+        }
+
+        static Column fromKey(String key) {
+            for (Column column : values()) {
+                if (column.key.equals(key)) {
+                    return column;
+                }
+            }
+            return null;
+        }
+    }
+
+    private TabularTests() {
+    }
+
+    static ObjectNode toTree(IdmUnitTest test, SharedConnectors shared) {
+        ObjectMapper mapper = JsonUtils.getMapper();
+        ObjectNode root = mapper.createObjectNode();
+        putIfNotNull(root, NAME_KEY, test.getName());
+        putIfNotNull(root, TITLE_KEY, test.getTitle());
+        putIfNotNull(root, DESC_KEY, test.getDesc());
+        if (test.getColumnWidths() != null) {
+            root.set(COLUMN_WIDTHS_KEY, mapper.valueToTree(test.getColumnWidths()));
+        }
+        if (test.getConnectors() != null) {
+            ArrayNode connectorsNode = mapper.createArrayNode();
+            for (Connector connector : test.getConnectors()) {
+                connectorsNode.add(shared.isShared(connector) ? TextNode.valueOf(connector.getName()) : mapper.valueToTree(connector));
+            }
+            root.set(CONNECTORS_KEY, connectorsNode);
+        }
+        if (test.getOperations() != null) {
+            List<Column> columns = new ArrayList<>();
+            for (Column column : Column.values()) {
+                if (test.getOperations().stream().anyMatch(column::isUsedBy)) {
+                    columns.add(column);
+                }
+            }
+            ArrayNode columnsNode = root.putArray(OPERATION_COLUMNS_KEY);
+            columns.forEach(x -> columnsNode.add(x.key));
+            Map<String, Map<String, Integer>> attributeIndices = getAttributeIndices(test.getConnectors());
+            ArrayNode operationsNode = root.putArray(OPERATIONS_KEY);
+            for (Operation operation : test.getOperations()) {
+                operationsNode.add(toRow(operation, columns, attributeIndices));
+            }
+        }
+        if (test.getHasIsCriticalConfigHeader() != null) {
+            root.put(HAS_IS_CRITICAL_KEY, test.getHasIsCriticalConfigHeader());
+        }
+        if (test.getHasRepeatOpRangeConfigHeader() != null) {
+            root.put(HAS_REPEAT_OP_RANGE_KEY, test.getHasRepeatOpRangeConfigHeader());
+        }
+        return root;
+    }
+
+    static IdmUnitTest fromTree(JsonNode root, SharedConnectors shared, StringPool pool) {
+        ObjectMapper mapper = JsonUtils.getMapper();
+        IdmUnitTest test = new IdmUnitTest();
+        test.setName(textOrNull(root.get(NAME_KEY)));
+        test.setTitle(textOrNull(root.get(TITLE_KEY)));
+        test.setDesc(textOrNull(root.get(DESC_KEY)));
+        if (root.hasNonNull(COLUMN_WIDTHS_KEY)) {
+            test.setColumnWidths(mapper.convertValue(root.get(COLUMN_WIDTHS_KEY), new TypeReference<Map<Integer, Float>>() {}));
+        }
+        if (root.hasNonNull(CONNECTORS_KEY)) {
+            List<Connector> connectors = new ArrayList<>();
+            for (JsonNode connectorNode : root.get(CONNECTORS_KEY)) {
+                if (connectorNode.isTextual()) {
+                    Connector connector = shared.get(connectorNode.asText());
+                    if (connector == null) {
+                        throw new RuntimeException(String.format("Test '%s' refers to shared connector '%s', which the manifest does not define.", test.getName(), connectorNode.asText()));
+                    }
+                    connectors.add(connector);
+                } else {
+                    connectors.add(mapper.convertValue(connectorNode, Connector.class));
+                }
+            }
+            test.setConnectors(connectors);
+        }
+        if (root.hasNonNull(OPERATIONS_KEY)) {
+            List<Column> columns = new ArrayList<>();
+            for (JsonNode keyNode : root.path(OPERATION_COLUMNS_KEY)) {
+                Column column = Column.fromKey(keyNode.asText());
+                if (column == null) {
+                    throw new RuntimeException(String.format("Unknown operation column '%s' in test '%s'.", keyNode.asText(), test.getName()));
+                }
+                columns.add(column);
+            }
+            List<Operation> operations = new ArrayList<>();
+            for (JsonNode rowNode : root.get(OPERATIONS_KEY)) {
+                operations.add(fromRow(test, rowNode, columns, pool));
+            }
+            test.setOperations(operations);
+        }
+        if (root.hasNonNull(HAS_IS_CRITICAL_KEY)) {
+            test.setHasIsCriticalConfigHeader(root.get(HAS_IS_CRITICAL_KEY).asBoolean());
+        }
+        if (root.hasNonNull(HAS_REPEAT_OP_RANGE_KEY)) {
+            test.setHasRepeatOpRangeConfigHeader(root.get(HAS_REPEAT_OP_RANGE_KEY).asBoolean());
+        }
+        return test;
+    }
+
+    private static ArrayNode toRow(Operation operation, List<Column> columns, Map<String, Map<String, Integer>> attributeIndices) {
+        ArrayNode rowNode = JsonUtils.getMapper().createArrayNode();
+        int numValues = 0;
+        for (Column column : columns) {
+            switch (column) {
+                case DATA:
+                    if (operation.getData() != null) {
+                        rowNode.add(toDataNode(operation.getData(), attributeIndices.get(operation.getTarget())));
+                    } else {
+                        rowNode.addNull();
+                    }
+                    break;
+                case META:
+                    rowNode.add(toStringArray(operation.getMeta()));
+                    break;
+                default:
+                    rowNode.add(column.getter.apply(operation));
+            }
+            if (column.isUsedBy(operation)) {
+                numValues = rowNode.size();
+            }
+        }
+        while (rowNode.size() > numValues) {
+            rowNode.remove(rowNode.size() - 1);
+        }
+        return rowNode;
+    }
+
+    private static ArrayNode toDataNode(List<OperationData> data, Map<String, Integer> targetAttributeIndices) {
+        ArrayNode dataNode = JsonUtils.getMapper().createArrayNode();
+        for (OperationData item : data) {
+            ArrayNode itemNode = dataNode.addArray();
+            Integer index = targetAttributeIndices == null ? null : targetAttributeIndices.get(item.getAttribute());
+            if (index != null) {
+                itemNode.add(index);
+            } else {
+                itemNode.add(item.getAttribute());
+            }
+            itemNode.add(toStringArray(item.getValue()));
+            if (item.getMeta() != null) {
+                itemNode.add(toStringArray(item.getMeta()));
+            }
+        }
+        return dataNode;
+    }
+
+    private static Operation fromRow(IdmUnitTest test, JsonNode rowNode, List<Column> columns, StringPool pool) {
+        if (rowNode.size() > columns.size()) {
+            throw new RuntimeException(String.format("An operation of test '%s' has %d values, but only %d operation columns are defined.", test.getName(), rowNode.size(), columns.size()));
+        }
+        Operation operation = new Operation();
+        JsonNode dataNode = null;
+        for (int i = 0; i < rowNode.size(); i++) {
+            JsonNode valueNode = rowNode.get(i);
+            if (valueNode.isNull()) {
+                continue;
+            }
+            Column column = columns.get(i);
+            switch (column) {
+                case DATA:
+                    dataNode = valueNode;
+                    break;
+                case META:
+                    operation.setMeta(fromStringArray(valueNode, pool::get));
+                    break;
+                case COMMENT:
+                    column.setter.accept(operation, valueNode.asText());
+                    break;
+                default:
+                    column.setter.accept(operation, pool.get(valueNode.asText()));
+            }
+        }
+        // Data refers to the attributes of the target, which may be in a later column
+        if (dataNode != null) {
+            operation.setData(fromDataNode(test, operation.getTarget(), dataNode, pool));
+        }
+        return operation;
+    }
+
+    private static List<OperationData> fromDataNode(IdmUnitTest test, String target, JsonNode dataNode, StringPool pool) {
+        List<ConnectorAttribute> targetAttributes = test.getConnectors().stream()
+            .filter(x -> x.getName().equals(target) && x.getAttributes() != null)
+            .map(Connector::getAttributes)
+            .findFirst()
+            .orElse(null);
+        List<OperationData> data = new ArrayList<>();
+        for (JsonNode itemNode : dataNode) {
+            OperationData item = new OperationData();
+            JsonNode attributeNode = itemNode.get(0);
+            if (attributeNode.getNodeType() == JsonNodeType.NUMBER) {
+                int index = attributeNode.asInt();
+                if (targetAttributes == null || index < 0 || index >= targetAttributes.size()) {
+                    throw new RuntimeException(String.format("Operation data of test '%s' refers to attribute %d of connector '%s', which does not exist.", test.getName(), index, target));
+                }
+                item.setAttribute(targetAttributes.get(index).getName());
+            } else {
+                item.setAttribute(pool.get(attributeNode.asText()));
+            }
+            item.setValue(fromStringArray(itemNode.get(1), pool::getValue));
+            if (itemNode.hasNonNull(2)) {
+                item.setMeta(fromStringArray(itemNode.get(2), pool::get));
+            }
+            data.add(item);
+        }
+        return data;
+    }
+
+    private static Map<String, Map<String, Integer>> getAttributeIndices(List<Connector> connectors) {
+        Map<String, Map<String, Integer>> attributeIndices = new HashMap<>();
+        if (connectors == null) {
+            return attributeIndices;
+        }
+        for (Connector connector : connectors) {
+            if (connector.getAttributes() == null || attributeIndices.containsKey(connector.getName())) {
+                continue;
+            }
+            Map<String, Integer> indices = new HashMap<>();
+            for (int i = 0; i < connector.getAttributes().size(); i++) {
+                indices.putIfAbsent(connector.getAttributes().get(i).getName(), i);
+            }
+            attributeIndices.put(connector.getName(), indices);
+        }
+        return attributeIndices;
+    }
+
+    private static ArrayNode toStringArray(List<String> values) {
+        if (values == null) {
+            return null;
+        }
+        ArrayNode arrayNode = JsonUtils.getMapper().createArrayNode();
+        values.forEach(arrayNode::add);
+        return arrayNode;
+    }
+
+    private static List<String> fromStringArray(JsonNode arrayNode, UnaryOperator<String> pooled) {
+        if (arrayNode == null || arrayNode.isNull()) {
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        arrayNode.forEach(x -> values.add(x.isNull() ? null : pooled.apply(x.asText())));
+        return values;
+    }
+
+    private static void putIfNotNull(ObjectNode node, String key, String value) {
+        if (value != null) {
+            node.put(key, value);
+        }
+    }
+
+    private static String textOrNull(JsonNode node) {
+        return node == null || node.isNull() ? null : node.asText();
+    }
+}
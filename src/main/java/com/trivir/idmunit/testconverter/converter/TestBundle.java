@@ -0,0 +1,606 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.converter;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.trivir.idmunit.testconverter.converter.model.IdmUnitTest;
+import com.trivir.idmunit.testconverter.converter.model.SharedConnectors;
+import com.trivir.idmunit.testconverter.util.FilesUtils;
+import com.trivir.idmunit.testconverter.util.JsonUtils;
+import lombok.AllArgsConstructor;
+import picocli.CommandLine;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * How the manifest and sheet files converted from one workbook are stored: as files in an .idmunit directory, or
+ * bundled into a single file, which saves creating and syncing a file per sheet on slow or shared file systems.
+ */
+@AllArgsConstructor
+public enum TestBundle {
+    /**
+     * An .idmunit directory holding the manifest and a file per sheet.
+     */
+    DIRECTORY("dir", ".idmunit") {
+        @Override
+        public Writer createWriter(Path path, TestSchema schema, TestEncoding encoding, SharedConnectors shared) throws IOException {
+            return new DirectoryWriter(path, schema, encoding, shared);
+        }
+
+        @Override
+        public Reader openReader(Path path) {
+            return new DirectoryReader(path);
+        }
+    },
+    /**
+     * A zip file with the same entries as an .idmunit directory.
+     */
+    ZIP("zip", ".idmunit.zip") {
+        @Override
+        public Writer createWriter(Path path, TestSchema schema, TestEncoding encoding, SharedConnectors shared) throws IOException {
+            return new ZipWriter(path, schema, encoding, shared);
+        }
+
+        @Override
+        public Reader openReader(Path path) throws IOException {
+            return new ZipReader(path);
+        }
+    },
+    /**
+     * A gzip-compressed file of JSON lines: the manifest, followed by one line per sheet in the order of the workbook.
+     * Always JSON, whatever the encoding asked for. Each line is a gzip member of its own and the manifest holds the
+     * offset of each sheet, so that any sheet can be read on its own.
+     */
+    NDJSON("ndjson", ".idmunit.ndjson.gz") {
+        @Override
+        public Writer createWriter(Path path, TestSchema schema, TestEncoding encoding, SharedConnectors shared) throws IOException {
+            return new NdjsonWriter(path, schema, shared);
+        }
+
+        @Override
+        public Reader openReader(Path path) throws IOException {
+            return new NdjsonReader(path);
+        }
+    };
+
+    public static final String DEFAULT_NAME = "dir";
+    public static final String MANIFEST_FILE_NAME = "manifest.idmunit.json";
+    public static final String SHEET_FILE_EXTENSION = ".json";
+
+    private static final String SHEET_INDEX_KEY = "sheetIndex";
+    private static final String OFFSET_FROM_END_KEY = "offsetFromEnd";
+    private static final String SIZE_KEY = "size";
+    private static final int NDJSON_BUFFER_SIZE = 64 * 1024;
+
+    private final String name;
+    private final String extension;
+
+    public String getName() {
+        return name;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Creates a writer for a new bundle. A directory that already exists is written into, so that the sheets kept in
+     * it can be reused. Connectors that are shared are written as references, and the manifest must define them.
+     */
+    public abstract Writer createWriter(Path path, TestSchema schema, TestEncoding encoding, SharedConnectors shared) throws IOException;
+
+    public abstract Reader openReader(Path path) throws IOException;
+
+    /**
+     * Whether the sheets written by an interrupted conversion can be reused. Only directories keep them.
+     */
+    public boolean isResumable() {
+        return this == DIRECTORY;
+    }
+
+    public boolean matches(Path path) {
+        return path.getFileName().toString().endsWith(extension) && (this == DIRECTORY ? Files.isDirectory(path) : Files.isRegularFile(path));
+    }
+
+    /**
+     * The file name of the bundle without its extension, which is the name of the workbook it was converted from.
+     */
+    public String getBaseName(Path path) {
+        String fileName = path.getFileName().toString();
+        return fileName.substring(0, fileName.length() - extension.length());
+    }
+
+    /**
+     * @return the bundle the path is, or null if it is not one
+     */
+    public static TestBundle fromPath(Path path) {
+        for (TestBundle bundle : values()) {
+            if (bundle.matches(path)) {
+                return bundle;
+            }
+        }
+        return null;
+    }
+
+    public static TestBundle fromName(String name) {
+        for (TestBundle bundle : values()) {
+            if (bundle.name.equalsIgnoreCase(name)) {
+                return bundle;
+            }
+        }
+        String knownNames = Arrays.stream(values()).map(TestBundle::getName).collect(Collectors.joining(", "));
+        throw new IllegalArgumentException(String.format("Unknown bundle '%s', expected one of %s.", name, knownNames));
+    }
+
+    public static class NameConverter implements CommandLine.ITypeConverter<TestBundle> {
+        @Override
+        public TestBundle convert(String value) {
+            try {
+                return fromName(value);
+            } catch (IllegalArgumentException e) {
+                throw new CommandLine.TypeConversionException(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes the files of one workbook. The manifest must be written before the sheets.
+     */
+    public interface Writer extends Closeable {
+        /**
+         * Serializes a sheet the way this bundle stores it, so that it can be timed apart from writing it.
+         */
+        byte[] serialize(IdmUnitTest test) throws IOException;
+
+        void writeManifest(JsonNode manifest) throws IOException;
+
+        void writeSheet(String sheetName, byte[] content) throws IOException;
+    }
+
+    /**
+     * Reads the files of one workbook, in any order.
+     */
+    public interface Reader extends Closeable {
+        InputStream openManifest() throws IOException;
+
+        InputStream openSheet(String sheetName) throws IOException;
+
+        /**
+         * The size of a sheet as stored, before any compression of the bundle.
+         */
+        long getSheetSize(String sheetName) throws IOException;
+
+        /**
+         * @return the hash of a sheet kept in an {@link ObjectStore}, or null if the sheet is in the bundle itself
+         */
+        default String getSheetHash(String sheetName) throws IOException {
+            return null;
+        }
+    }
+
+    private abstract static class EncodedWriter implements Writer {
+
+        private final TestSchema schema;
+        private final TestEncoding encoding;
+        private final SharedConnectors shared;
+
+        EncodedWriter(TestSchema schema, TestEncoding encoding, SharedConnectors shared) {
+            this.schema = schema;
+            this.encoding = encoding;
+            this.shared = shared;
+        }
+
+        @Override
+        public byte[] serialize(IdmUnitTest test) throws IOException {
+            return schema.write(test, encoding, shared);
+        }
+
+        @Override
+        public void writeManifest(JsonNode manifest) throws IOException {
+            write(MANIFEST_FILE_NAME, encoding.getWriter().writeValueAsBytes(manifest));
+        }
+
+        @Override
+        public void writeSheet(String sheetName, byte[] content) throws IOException {
+            write(sheetName + SHEET_FILE_EXTENSION, content);
+        }
+
+        abstract void write(String fileName, byte[] content) throws IOException;
+    }
+
+    private static class DirectoryWriter extends EncodedWriter {
+
+        private final Path path;
+
+        DirectoryWriter(Path path, TestSchema schema, TestEncoding encoding, SharedConnectors shared) throws IOException {
+            super(schema, encoding, shared);
+            this.path = path;
+            Files.createDirectories(path);
+        }
+
+        @Override
+        void write(String fileName, byte[] content) throws IOException {
+            Files.write(path.resolve(fileName), content);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class ZipWriter extends EncodedWriter {
+
+        private final ZipOutputStream outputStream;
+
+        ZipWriter(Path path, TestSchema schema, TestEncoding encoding, SharedConnectors shared) throws IOException {
+            super(schema, encoding, shared);
+            this.outputStream = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+        }
+
+        @Override
+        void write(String fileName, byte[] content) throws IOException {
+            outputStream.putNextEntry(new ZipEntry(fileName));
+            outputStream.write(content);
+            outputStream.closeEntry();
+        }
+
+        @Override
+        public void close() throws IOException {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Writes each line as a gzip member of its own, so that a sheet can be read without decompressing the lines before
+     * it. The manifest goes first but is only written on close, with the offset of each sheet, so the sheets are
+     * written to a temporary file next to the bundle until then.
+     */
+    private static class NdjsonWriter implements Writer {
+
+        private final TestSchema schema;
+        private final SharedConnectors shared;
+        private final Path path;
+        private final Path sheetsPath;
+        private final OutputStream sheetsStream;
+        private long sheetsSize;
+        private final Map<String, long[]> sheetPositions = new LinkedHashMap<>();
+        private ObjectNode manifest;
+
+        NdjsonWriter(Path path, TestSchema schema, SharedConnectors shared) throws IOException {
+            this.schema = schema;
+            this.shared = shared;
+            this.path = path;
+            this.sheetsPath = path.resolveSibling(path.getFileName() + ".sheets");
+            this.sheetsStream = new BufferedOutputStream(Files.newOutputStream(sheetsPath), NDJSON_BUFFER_SIZE);
+        }
+
+        @Override
+        public byte[] serialize(IdmUnitTest test) throws IOException {
+            return schema.writeLine(test, shared);
+        }
+
+        @Override
+        public void writeManifest(JsonNode manifest) {
+            this.manifest = manifest.deepCopy();
+        }
+
+        @Override
+        public void writeSheet(String sheetName, byte[] content) throws IOException {
+            if (manifest == null) {
+                throw new IllegalStateException("The manifest must be the first line of a bundle.");
+            }
+            byte[] member = compressLine(content);
+            sheetPositions.put(sheetName, new long[] {sheetsSize, content.length});
+            sheetsStream.write(member);
+            sheetsSize += member.length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                sheetsStream.close();
+                if (manifest != null) {
+                    // Offsets are counted back from the end of the bundle, as they are not known until the manifest is
+                    // compressed, and the manifest holds them
+                    if (!sheetPositions.isEmpty()) {
+                        ObjectNode indexNode = manifest.putObject(SHEET_INDEX_KEY);
+                        sheetPositions.forEach((sheetName, position) -> indexNode.putObject(sheetName)
+                            .put(OFFSET_FROM_END_KEY, sheetsSize - position[0])
+                            .put(SIZE_KEY, position[1]));
+                    }
+                    try (OutputStream outputStream = Files.newOutputStream(path)) {
+                        outputStream.write(compressLine(JsonUtils.getMapper().writeValueAsBytes(manifest)));
+                        Files.copy(sheetsPath, outputStream);
+                    }
+                }
+            } finally {
+                Files.deleteIfExists(sheetsPath);
+            }
+        }
+
+        private static byte[] compressLine(byte[] content) throws IOException {
+            ByteArrayOutputStream member = new ByteArrayOutputStream(content.length / 8 + 64);
+            try (OutputStream outputStream = new GZIPOutputStream(member, NDJSON_BUFFER_SIZE)) {
+                outputStream.write(content);
+                outputStream.write('\n');
+            }
+            return member.toByteArray();
+        }
+    }
+
+    private static class DirectoryReader implements Reader {
+
+        private final Path path;
+
+        DirectoryReader(Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public InputStream openManifest() throws IOException {
+            return Files.newInputStream(path.resolve(MANIFEST_FILE_NAME));
+        }
+
+        @Override
+        public InputStream openSheet(String sheetName) throws IOException {
+            return Files.newInputStream(path.resolve(sheetName + SHEET_FILE_EXTENSION));
+        }
+
+        @Override
+        public long getSheetSize(String sheetName) {
+            return FilesUtils.size(path.resolve(sheetName + SHEET_FILE_EXTENSION));
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class ZipReader implements Reader {
+
+        private final Path path;
+        private final ZipFile zipFile;
+
+        ZipReader(Path path) throws IOException {
+            this.path = path;
+            this.zipFile = new ZipFile(path.toFile());
+        }
+
+        @Override
+        public InputStream openManifest() throws IOException {
+            return zipFile.getInputStream(getEntry(MANIFEST_FILE_NAME));
+        }
+
+        @Override
+        public InputStream openSheet(String sheetName) throws IOException {
+            return zipFile.getInputStream(getEntry(sheetName + SHEET_FILE_EXTENSION));
+        }
+
+        @Override
+        public long getSheetSize(String sheetName) throws IOException {
+            return getEntry(sheetName + SHEET_FILE_EXTENSION).getSize();
+        }
+
+        private ZipEntry getEntry(String fileName) throws IOException {
+            ZipEntry entry = zipFile.getEntry(fileName);
+            if (entry == null) {
+                throw new NoSuchFileException(path.toString(), null, String.format("No entry '%s'", fileName));
+            }
+            return entry;
+        }
+
+        @Override
+        public void close() throws IOException {
+            zipFile.close();
+        }
+    }
+
+    /**
+     * Finds sheets by the index in the manifest, decompressing only the line of the sheet. Bundles without an index
+     * are searched by the name field of their lines: reading the sheets in the order they were written decompresses
+     * the bundle once, and reading a sheet that comes before the last one read starts over from the beginning.
+     */
+    private static class NdjsonReader implements Reader {
+
+        private static final int BUFFER_SIZE = NDJSON_BUFFER_SIZE;
+
+        private final Path path;
+        private final byte[] manifest;
+        private final JsonNode sheetIndex;
+        private final long bundleSize;
+        private final Map<String, Long> sheetSizes = new HashMap<>();
+        private InputStream inputStream;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int bufferPosition;
+        private int bufferLimit;
+        private String lastSheetName;
+        private byte[] lastSheet;
+
+        NdjsonReader(Path path) throws IOException {
+            this.path = path;
+            this.manifest = rewind();
+            if (manifest == null) {
+                throw new IOException(String.format("Bundle '%s' is empty.", path));
+            }
+            this.sheetIndex = JsonUtils.getMapper().readTree(manifest).get(SHEET_INDEX_KEY);
+            this.bundleSize = Files.size(path);
+        }
+
+        @Override
+        public InputStream openManifest() {
+            return new ByteArrayInputStream(manifest);
+        }
+
+        @Override
+        public InputStream openSheet(String sheetName) throws IOException {
+            return new ByteArrayInputStream(findSheet(sheetName));
+        }
+
+        @Override
+        public long getSheetSize(String sheetName) throws IOException {
+            if (sheetIndex != null) {
+                return getIndexEntry(sheetName).get(SIZE_KEY).asLong();
+            }
+            Long size = sheetSizes.get(sheetName);
+            return size != null ? size : findSheet(sheetName).length;
+        }
+
+        private JsonNode getIndexEntry(String sheetName) throws IOException {
+            JsonNode entry = sheetIndex.get(sheetName);
+            if (entry == null) {
+                throw new NoSuchFileException(path.toString(), null, String.format("No sheet '%s'", sheetName));
+            }
+            return entry;
+        }
+
+        // The last sheet found is kept, so that a sheet read in two passes is only looked for once
+        private byte[] findSheet(String sheetName) throws IOException {
+            if (sheetName.equals(lastSheetName)) {
+                return lastSheet;
+            }
+            if (sheetIndex != null) {
+                seek(bundleSize - getIndexEntry(sheetName).get(OFFSET_FROM_END_KEY).asLong());
+                lastSheetName = sheetName;
+                lastSheet = readLine();
+                if (lastSheet == null) {
+                    throw new IOException(String.format("Bundle '%s' ends before sheet '%s'.", path, sheetName));
+                }
+                return lastSheet;
+            }
+            for (boolean rewound = false; ; rewound = true) {
+                for (byte[] line = readLine(); line != null; line = readLine()) {
+                    String name = readName(line);
+                    sheetSizes.put(name, (long) line.length);
+                    if (sheetName.equals(name)) {
+                        lastSheetName = name;
+                        lastSheet = line;
+                        return line;
+                    }
+                }
+                if (rewound) {
+                    throw new NoSuchFileException(path.toString(), null, String.format("No sheet '%s'", sheetName));
+                }
+                rewind();
+            }
+        }
+
+        private byte[] rewind() throws IOException {
+            seek(0);
+            return readLine();
+        }
+
+        private void seek(long position) throws IOException {
+            close();
+            SeekableByteChannel channel = Files.newByteChannel(path);
+            try {
+                channel.position(position);
+                inputStream = new GZIPInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            bufferPosition = 0;
+            bufferLimit = 0;
+        }
+
+        private byte[] readLine() throws IOException {
+            ByteArrayOutputStream line = null;
+            while (true) {
+                if (bufferPosition == bufferLimit) {
+                    bufferLimit = inputStream.read(buffer);
+                    bufferPosition = 0;
+                    if (bufferLimit <= 0) {
+                        bufferLimit = 0;
+                        return line == null ? null : line.toByteArray();
+                    }
+                }
+                int start = bufferPosition;
+                while (bufferPosition < bufferLimit && buffer[bufferPosition] != '\n') {
+                    bufferPosition++;
+                }
+                if (line == null) {
+                    line = new ByteArrayOutputStream(Math.max(32, bufferPosition - start));
+                }
+                line.write(buffer, start, bufferPosition - start);
+                if (bufferPosition < bufferLimit) {
+                    bufferPosition++;
+                    return line.toByteArray();
+                }
+            }
+        }
+
+        // Only reads as far as the top level name field, skipping over the values before it
+        private String readName(byte[] line) throws IOException {
+            try (JsonParser parser = JsonUtils.getMapper().getFactory().createParser(line)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new IOException(String.format("Line of bundle '%s' is not a JSON object.", path));
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    if ("name".equals(parser.getCurrentName())) {
+                        return parser.nextTextValue();
+                    }
+                    parser.nextToken();
+                    parser.skipChildren();
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (inputStream != null) {
+                inputStream.close();
+            }
+        }
+    }
+}
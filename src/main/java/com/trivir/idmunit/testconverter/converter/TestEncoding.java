@@ -0,0 +1,148 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.converter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.format.DataFormatDetector;
+import com.fasterxml.jackson.core.format.DataFormatMatcher;
+import com.fasterxml.jackson.core.format.MatchStrength;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.trivir.idmunit.testconverter.util.JsonUtils;
+import lombok.AllArgsConstructor;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * The encodings the sheet and manifest files of an .idmunit directory can be written in. The files keep their names
+ * whatever their encoding, and readers find out the encoding of every file from its first bytes.
+ */
+@AllArgsConstructor
+public enum TestEncoding {
+    JSON("json") {
+        @Override
+        public ObjectMapper getMapper() {
+            return JsonUtils.getMapper();
+        }
+
+        @Override
+        public ObjectWriter getWriter() {
+            return JsonUtils.getWriter();
+        }
+
+        @Override
+        public ObjectWriter getTableWriter() {
+            return JsonUtils.getTableWriter();
+        }
+    },
+    SMILE("smile") {
+        @Override
+        public ObjectMapper getMapper() {
+            return JsonUtils.getSmileMapper();
+        }
+    },
+    CBOR("cbor") {
+        @Override
+        public ObjectMapper getMapper() {
+            return JsonUtils.getCborMapper();
+        }
+    };
+
+    public static final String DEFAULT_NAME = "json";
+
+    // Smile claims a solid match for CBOR content, so only stop looking at an encoding that matches fully
+    private static final DataFormatDetector DETECTOR = new DataFormatDetector(
+        Arrays.stream(values()).map(x -> x.getMapper().getFactory()).toArray(JsonFactory[]::new))
+        .withOptimalMatch(MatchStrength.FULL_MATCH);
+
+    private final String name;
+
+    public String getName() {
+        return name;
+    }
+
+    public abstract ObjectMapper getMapper();
+
+    /**
+     * The writer for files people may read. Only JSON is indented, the binary encodings are written as compactly as
+     * they can be.
+     */
+    public ObjectWriter getWriter() {
+        return getMapper().writer();
+    }
+
+    /**
+     * Like {@link #getWriter()}, but puts every row of a table on one line of JSON.
+     */
+    public ObjectWriter getTableWriter() {
+        return getMapper().writer();
+    }
+
+    /**
+     * Creates a parser for a file in any of the encodings.
+     *
+     * @throws IOException if the file does not start like any of them
+     */
+    public static JsonParser createParser(InputStream inputStream) throws IOException {
+        DataFormatMatcher match = DETECTOR.findFormat(inputStream);
+        if (!match.hasMatch()) {
+            throw new IOException(String.format("Content is not in any of the known encodings (%s).", getNames()));
+        }
+        return match.createParserWithMatch();
+    }
+
+    public static TestEncoding fromName(String name) {
+        for (TestEncoding encoding : values()) {
+            if (encoding.name.equalsIgnoreCase(name)) {
+                return encoding;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown encoding '%s', expected one of %s.", name, getNames()));
+    }
+
+    private static String getNames() {
+        return Arrays.stream(values()).map(TestEncoding::getName).collect(Collectors.joining(", "));
+    }
+
+    public static class NameConverter implements CommandLine.ITypeConverter<TestEncoding> {
+        @Override
+        public TestEncoding convert(String value) {
+            try {
+                return fromName(value);
+            } catch (IllegalArgumentException e) {
+                throw new CommandLine.TypeConversionException(e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.converter;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.filter.FilteringParserDelegate;
+import com.fasterxml.jackson.core.filter.TokenFilter;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.trivir.idmunit.testconverter.converter.model.IdmUnitTest;
+import com.trivir.idmunit.testconverter.converter.model.Operation;
+import com.trivir.idmunit.testconverter.converter.model.SharedConnectors;
+import com.trivir.idmunit.testconverter.converter.model.StringPool;
+import com.trivir.idmunit.testconverter.util.JsonUtils;
+import lombok.AllArgsConstructor;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * The layouts of the sheet files in an .idmunit directory. The manifest of a directory names the layout of its sheet
+ * files in its schemaVersion, and directories written before it was recorded use 1.0.
+ */
+@AllArgsConstructor
+public enum TestSchema {
+    /**
+     * Every operation is an object with a field per operation config header, and every operation data item an object
+     * naming its attribute.
+     */
+    V1("1.0") {
+        @Override
+        public byte[] write(IdmUnitTest test, TestEncoding encoding, SharedConnectors shared) throws IOException {
+            return encoding.getWriter().withAttribute(SharedConnectors.ATTRIBUTE, shared).writeValueAsBytes(test);
+        }
+
+        @Override
+        public byte[] writeLine(IdmUnitTest test, SharedConnectors shared) throws IOException {
+            return JsonUtils.getMapper().writer().withAttribute(SharedConnectors.ATTRIBUTE, shared).writeValueAsBytes(test);
+        }
+
+        @Override
+        public IdmUnitTest read(InputStream inputStream, SharedConnectors shared, StringPool stringPool) throws IOException {
+            try (JsonParser parser = TestEncoding.createParser(inputStream)) {
+                return JsonUtils.getMapper().readerFor(IdmUnitTest.class)
+                    .withAttribute(SharedConnectors.ATTRIBUTE, shared)
+                    .withAttribute(StringPool.ATTRIBUTE, stringPool)
+                    .readValue(parser);
+            }
+        }
+
+        @Override
+        public boolean isStreamable() {
+            return true;
+        }
+
+        @Override
+        public IdmUnitTest readHeader(InputStream inputStream, SharedConnectors shared) throws IOException {
+            try (JsonParser parser = new FilteringParserDelegate(TestEncoding.createParser(inputStream), new OperationsFilter(), TokenFilter.Inclusion.INCLUDE_ALL_AND_PATH, true)) {
+                return JsonUtils.getMapper().readerFor(IdmUnitTest.class)
+                    .withAttribute(SharedConnectors.ATTRIBUTE, shared)
+                    .readValue(parser);
+            }
+        }
+
+        @Override
+        public void readOperations(InputStream inputStream, StringPool stringPool, Consumer<Operation> consumer) throws IOException {
+            try (JsonParser parser = TestEncoding.createParser(inputStream)) {
+                ObjectReader reader = JsonUtils.getMapper().readerFor(Operation.class).withAttribute(StringPool.ATTRIBUTE, stringPool);
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new IOException("Test is not a JSON object.");
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String fieldName = parser.getCurrentName();
+                    JsonToken token = parser.nextToken();
+                    if (OPERATIONS_FIELD.equals(fieldName) && token == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            consumer.accept(reader.readValue(parser));
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+    },
+    /**
+     * Operations are rows of values under a header of column keys, and operation data items refer to the attributes of
+     * their target connector by index. See {@link TabularTests}.
+     */
+    V2("2.0") {
+        @Override
+        public byte[] write(IdmUnitTest test, TestEncoding encoding, SharedConnectors shared) throws IOException {
+            return encoding.getTableWriter().writeValueAsBytes(TabularTests.toTree(test, shared));
+        }
+
+        @Override
+        public byte[] writeLine(IdmUnitTest test, SharedConnectors shared) throws IOException {
+            return JsonUtils.getMapper().writeValueAsBytes(TabularTests.toTree(test, shared));
+        }
+
+        @Override
+        public IdmUnitTest read(InputStream inputStream, SharedConnectors shared, StringPool stringPool) throws IOException {
+            try (JsonParser parser = TestEncoding.createParser(inputStream)) {
+                return TabularTests.fromTree(JsonUtils.getMapper().readTree(parser), shared, stringPool);
+            }
+        }
+    };
+
+    public static final String DEFAULT_VERSION = "1.0";
+
+    private static final String OPERATIONS_FIELD = "operations";
+
+    private final String version;
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Writes the test, with its connectors that are shared as references to them.
+     */
+    public abstract byte[] write(IdmUnitTest test, TestEncoding encoding, SharedConnectors shared) throws IOException;
+
+    /**
+     * Writes the test as JSON without any line breaks, for line-delimited files.
+     */
+    public abstract byte[] writeLine(IdmUnitTest test, SharedConnectors shared) throws IOException;
+
+    /**
+     * Reads a sheet file in any of the {@link TestEncoding encodings}, resolving its references to shared connectors.
+     * The names and flags that the operations repeat are read through the pool, which the sheets of a workbook share.
+     */
+    public abstract IdmUnitTest read(InputStream inputStream, SharedConnectors shared, StringPool stringPool) throws IOException;
+
+    /**
+     * Whether sheet files of this layout can be read in two passes, with {@link #readHeader} and
+     * {@link #readOperations}, instead of all at once.
+     */
+    public boolean isStreamable() {
+        return false;
+    }
+
+    /**
+     * Reads a sheet file like {@link #read}, but without its operations, which are skipped over as they are parsed.
+     */
+    public IdmUnitTest readHeader(InputStream inputStream, SharedConnectors shared) throws IOException {
+        throw new UnsupportedOperationException(String.format("Schema %s cannot be read in two passes.", version));
+    }
+
+    /**
+     * Reads the operations of a sheet file one at a time, passing each to the consumer before reading the next, so
+     * that only one operation of the test is in memory at a time.
+     */
+    public void readOperations(InputStream inputStream, StringPool stringPool, Consumer<Operation> consumer) throws IOException {
+        throw new UnsupportedOperationException(String.format("Schema %s cannot be read in two passes.", version));
+    }
+
+    public static TestSchema fromVersion(String version) {
+        for (TestSchema schema : values()) {
+            if (schema.version.equals(version)) {
+                return schema;
+            }
+        }
+        String knownVersions = Arrays.stream(values()).map(TestSchema::getVersion).collect(Collectors.joining(", "));
+        throw new IllegalArgumentException(String.format("Unknown schema version '%s', expected one of %s.", version, knownVersions));
+    }
+
+    // Leaves out the operations of a test, and nothing else
+    private static class OperationsFilter extends TokenFilter {
+        @Override
+        public TokenFilter includeProperty(String name) {
+            return OPERATIONS_FIELD.equals(name) ? null : TokenFilter.INCLUDE_ALL;
+        }
+    }
+
+    public static class VersionConverter implements CommandLine.ITypeConverter<TestSchema> {
+        @Override
+        public TestSchema convert(String value) {
+            try {
+                return fromVersion(value);
+            } catch (IllegalArgumentException e) {
+                throw new CommandLine.TypeConversionException(e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.converter;
+
+import com.trivir.idmunit.testconverter.converter.model.OperationConfigHeader;
+import lombok.Data;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Writes synthetic IdMUnit test sheets of a given shape, so that the converter can be tested at scale without real
+ * tests. The same seed and shape always produce the same sheets.
+ * <p>
+ * Every sheet has a Connectors Section and operations on targets that are only defined by the first header row, comment
+ * rows, formulas and, if asked for, the optional IsCritical and RepeatOpRange Operation Config headers.
+ */
+public class TestWorkbookGenerator {
+
+    private static final String SECTION_DELIMITER_ROW_VALUE = "---";
+    private static final String COMMENT_OPERATION_VALUE = "comment";
+    private static final String[] OPERATION_NAMES = {"addObject", "modObject", "validateObject", "deleteObject", "moveObject"};
+    private static final String VALUE_CHARACTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    private static final double ATTRIBUTE_FILL_RATE = 0.7;
+
+    private final Shape shape;
+    private final Random random;
+    private final List<OperationConfigHeader> operationConfigHeaders = new ArrayList<>();
+
+    public TestWorkbookGenerator(Shape shape, long seed) {
+        this.shape = shape;
+        this.random = new Random(seed);
+        operationConfigHeaders.add(OperationConfigHeader.COMMENT);
+        operationConfigHeaders.add(OperationConfigHeader.OPERATION);
+        operationConfigHeaders.add(OperationConfigHeader.TARGET);
+        operationConfigHeaders.add(OperationConfigHeader.WAIT_INTERVAL);
+        operationConfigHeaders.add(OperationConfigHeader.RETRY_COUNT);
+        operationConfigHeaders.add(OperationConfigHeader.DISABLE_STEP);
+        operationConfigHeaders.add(OperationConfigHeader.EXPECT_FAILURE);
+        if (shape.isCritical()) {
+            operationConfigHeaders.add(OperationConfigHeader.IS_CRITICAL);
+        }
+        if (shape.isRepeatOpRange()) {
+            operationConfigHeaders.add(OperationConfigHeader.REPEAT_OP_RANGE);
+        }
+    }
+
+    public int getNumColumns() {
+        return operationConfigHeaders.size() + shape.getNumAttributes();
+    }
+
+    public int getNumRows() {
+        // Title, description, three delimiter rows and the first header row
+        return 6 + shape.getNumConnectors() + shape.getNumOperations();
+    }
+
+    public void writeSheet(Sheet sheet) {
+        int numHeaders = operationConfigHeaders.size();
+        int rowNum = 0;
+        setCell(sheet.createRow(rowNum++), 0, "Generated test " + sheet.getSheetName());
+        setCell(sheet.createRow(rowNum++), 0, String.format("%d operations on %d connectors and %d inferred targets with %d attributes.",
+            shape.getNumOperations(), shape.getNumConnectors(), shape.getNumInferredTargets(), shape.getNumAttributes()));
+        setCell(sheet.createRow(rowNum++), 0, SECTION_DELIMITER_ROW_VALUE);
+        // The attributes on the first header row are the ones of the targets that are not in the Connectors Section
+        Row headerRow = sheet.createRow(rowNum++);
+        for (int i = 0; i < numHeaders; i++) {
+            setCell(headerRow, i, operationConfigHeaders.get(i).getExcelHeader());
+        }
+        for (int i = 0; i < shape.getNumAttributes(); i++) {
+            setCell(headerRow, numHeaders + i, attributeName("attr", i));
+        }
+        List<String> targets = new ArrayList<>();
+        for (int i = 1; i <= shape.getNumConnectors(); i++) {
+            String connectorName = "Connector" + i;
+            targets.add(connectorName);
+            Row connectorRow = sheet.createRow(rowNum++);
+            setCell(connectorRow, operationConfigHeaders.indexOf(OperationConfigHeader.TARGET), connectorName);
+            for (int j = 0; j < shape.getNumAttributes(); j++) {
+                setCell(connectorRow, numHeaders + j, attributeName("c" + i + "Attr", j));
+            }
+        }
+        for (int i = 1; i <= shape.getNumInferredTargets(); i++) {
+            targets.add("Inferred" + i);
+        }
+        setCell(sheet.createRow(rowNum++), 0, SECTION_DELIMITER_ROW_VALUE);
+        int firstOperationRowNum = rowNum;
+        // A formula that falls on a comment row is written on the next operation that is not a comment, so that the
+        // formula and comment rows can be as frequent as each other
+        boolean isFormulaDue = false;
+        for (int i = 0; i < shape.getNumOperations(); i++) {
+            Row row = sheet.createRow(rowNum++);
+            if (shape.getFormulaEvery() > 0 && i % shape.getFormulaEvery() == 0) {
+                isFormulaDue = true;
+            }
+            if (shape.getCommentEvery() > 0 && i % shape.getCommentEvery() == 0) {
+                setCell(row, operationConfigHeaders.indexOf(OperationConfigHeader.COMMENT), "Step " + (i + 1));
+                setCell(row, operationConfigHeaders.indexOf(OperationConfigHeader.OPERATION), COMMENT_OPERATION_VALUE);
+                continue;
+            }
+            String target = targets.get(random.nextInt(targets.size()));
+            setCell(row, operationConfigHeaders.indexOf(OperationConfigHeader.OPERATION), OPERATION_NAMES[random.nextInt(OPERATION_NAMES.length)]);
+            setCell(row, operationConfigHeaders.indexOf(OperationConfigHeader.TARGET), target);
+            if (random.nextInt(10) == 0) {
+                setCell(row, operationConfigHeaders.indexOf(OperationConfigHeader.WAIT_INTERVAL), String.valueOf(1 + random.nextInt(30)));
+                setCell(row, operationConfigHeaders.indexOf(OperationConfigHeader.RETRY_COUNT), String.valueOf(1 + random.nextInt(5)));
+            }
+            if (shape.isCritical()) {
+                setCell(row, operationConfigHeaders.indexOf(OperationConfigHeader.IS_CRITICAL), String.valueOf(random.nextBoolean()));
+            }
+            if (shape.isRepeatOpRange() && rowNum - firstOperationRowNum > 2 && random.nextInt(20) == 0) {
+                setCell(row, operationConfigHeaders.indexOf(OperationConfigHeader.REPEAT_OP_RANGE), String.format("%d-%d", rowNum - 2, rowNum - 1));
+            }
+            for (int j = 0; j < shape.getNumAttributes(); j++) {
+                int colIndex = numHeaders + j;
+                if (j == 0) {
+                    setCell(row, colIndex, String.format("cn=user%d,ou=%s,o=data", i, target));
+                } else if (j == 1 && isFormulaDue) {
+                    row.createCell(colIndex).setCellFormula(String.format("CONCATENATE(\"user\",\"%d\")", i));
+                    isFormulaDue = false;
+                } else if (random.nextDouble() < ATTRIBUTE_FILL_RATE) {
+                    setCell(row, colIndex, randomValue());
+                }
+            }
+        }
+        setCell(sheet.createRow(rowNum), 0, SECTION_DELIMITER_ROW_VALUE);
+    }
+
+    private static String attributeName(String prefix, int index) {
+        return index == 0 ? "dn" : prefix + index;
+    }
+
+    private String randomValue() {
+        char[] value = new char[8 + random.nextInt(9)];
+        for (int i = 0; i < value.length; i++) {
+            value[i] = VALUE_CHARACTERS.charAt(random.nextInt(VALUE_CHARACTERS.length()));
+        }
+        return new String(value);
+    }
+
+    private static void setCell(Row row, int colIndex, String value) {
+        row.createCell(colIndex).setCellValue(value);
+    }
+
+    @Data
+    public static class Shape {
+        private int numOperations = 100;
+        private int numConnectors = 3;
+        private int numInferredTargets = 1;
+        private int numAttributes = 10;
+        // Every n-th operation is a comment row, or none if 0
+        private int commentEvery = 10;
+        // Every n-th operation, or the next one after it that is not a comment, sets its second attribute with a formula,
+        // or none if 0
+        private int formulaEvery = 50;
+        private boolean critical;
+        private boolean repeatOpRange;
+    }
+}
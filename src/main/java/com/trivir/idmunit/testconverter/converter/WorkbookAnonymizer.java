@@ -0,0 +1,396 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.converter;
+
+import com.trivir.idmunit.testconverter.converter.model.OperationConfigHeader;
+import com.trivir.idmunit.testconverter.util.Pseudonymizer;
+import org.apache.poi.common.usermodel.HyperlinkType;
+import org.apache.poi.hpsf.DocumentSummaryInformation;
+import org.apache.poi.hpsf.SummaryInformation;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.common.UnicodeString;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ooxml.POIXMLProperties;
+import org.apache.poi.openxml4j.opc.internal.PackagePropertiesPart;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Comment;
+import org.apache.poi.ss.usermodel.Hyperlink;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.usermodel.XSSFHyperlink;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTRst;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites the values of a workbook in place with pseudonyms (see {@link Pseudonymizer}), so that real tests can be
+ * shared as performance cases. Only cell values, string literals in formulas, cell comments and hyperlinks change, and
+ * document properties that name people or organizations are removed; rows, cells, styles, column widths and
+ * formatting, including blank formatted cells, are left exactly as they are.
+ * <p>
+ * Whatever the converter bases its structure and lint messages on is kept: section delimiter rows, Operation Config
+ * headers and the values under them, except for comments and targets. Since the same value always gets the same
+ * pseudonym, connector names still match the targets of operations and attribute names still match between rows.
+ * Sheet names are kept as formulas may refer to them.
+ */
+public class WorkbookAnonymizer {
+
+    private static final String SECTION_DELIMITER_ROW_VALUE = "---";
+    // The values under these headers are free text or names, the values under the other headers are flags and numbers
+    private static final Set<OperationConfigHeader> ANONYMIZED_HEADERS = EnumSet.of(OperationConfigHeader.COMMENT, OperationConfigHeader.TARGET);
+
+    private static final Pattern URI_SCHEME = Pattern.compile("[A-Za-z][A-Za-z0-9+.-]*:(//)?");
+
+    private final Pseudonymizer pseudonymizer;
+    // The text cell values of the last workbook anonymized that were replaced, and those that are still in it, either
+    // kept or as the pseudonym of another value
+    private final Set<String> replacedValues = new HashSet<>();
+    private final Set<String> remainingValues = new HashSet<>();
+
+    public WorkbookAnonymizer(Pseudonymizer pseudonymizer) {
+        this.pseudonymizer = pseudonymizer;
+    }
+
+    public void anonymize(Workbook workbook) {
+        replacedValues.clear();
+        remainingValues.clear();
+        for (Sheet sheet : workbook) {
+            anonymize(sheet);
+        }
+        removeUnusedStrings(workbook);
+        removeDocumentProperties(workbook);
+    }
+
+    /**
+     * Checks a workbook, as written and read back after {@link #anonymize}, for the text cell values that were
+     * replaced, in its cells and in its table of shared strings.
+     *
+     * @return the number of the replaced values that are still in the workbook
+     */
+    public int countOriginalValues(Workbook workbook) {
+        Set<String> originalValues = new HashSet<>();
+        for (String value : getStringTable(workbook)) {
+            if (isOriginalValue(value)) {
+                originalValues.add(value);
+            }
+        }
+        for (Sheet sheet : workbook) {
+            for (Row row : sheet) {
+                for (Cell cell : row) {
+                    if (cell.getCellType() == CellType.STRING && isOriginalValue(cell.getStringCellValue())) {
+                        originalValues.add(cell.getStringCellValue());
+                    }
+                }
+            }
+        }
+        return originalValues.size();
+    }
+
+    private boolean isOriginalValue(String value) {
+        return replacedValues.contains(value) && !remainingValues.contains(value);
+    }
+
+    // Setting the value of a text cell adds the new value to the table of shared strings that the cells of .xls and
+    // .xlsx workbooks refer to, but never removes the old one, so the original values are blanked in the table once
+    // no cell refers to them
+    private void removeUnusedStrings(Workbook workbook) {
+        Set<String> usedValues = new HashSet<>();
+        for (Sheet sheet : workbook) {
+            for (Row row : sheet) {
+                for (Cell cell : row) {
+                    if (cell.getCellType() == CellType.STRING) {
+                        usedValues.add(cell.getStringCellValue());
+                    }
+                }
+            }
+        }
+        if (workbook instanceof XSSFWorkbook) {
+            SharedStringsTable table = ((XSSFWorkbook) workbook).getSharedStringSource();
+            for (int i = 0; i < table.getUniqueCount(); i++) {
+                XSSFRichTextString item = (XSSFRichTextString) table.getItemAt(i);
+                if (!usedValues.contains(item.getString())) {
+                    CTRst blank = CTRst.Factory.newInstance();
+                    blank.setT("");
+                    item.getCTRst().set(blank);
+                }
+            }
+        } else if (workbook instanceof HSSFWorkbook) {
+            SSTRecord table = (SSTRecord) ((HSSFWorkbook) workbook).getInternalWorkbook().findFirstRecordBySid(SSTRecord.sid);
+            for (int i = 0; table != null && i < table.getNumUniqueStrings(); i++) {
+                UnicodeString item = table.getString(i);
+                if (!usedValues.contains(item.getString())) {
+                    item.clearFormatting();
+                    item.setString("");
+                }
+            }
+        }
+    }
+
+    private List<String> getStringTable(Workbook workbook) {
+        List<String> values = new ArrayList<>();
+        if (workbook instanceof XSSFWorkbook) {
+            SharedStringsTable table = ((XSSFWorkbook) workbook).getSharedStringSource();
+            for (int i = 0; table != null && i < table.getUniqueCount(); i++) {
+                values.add(table.getItemAt(i).getString());
+            }
+        } else if (workbook instanceof HSSFWorkbook) {
+            SSTRecord table = (SSTRecord) ((HSSFWorkbook) workbook).getInternalWorkbook().findFirstRecordBySid(SSTRecord.sid);
+            for (int i = 0; table != null && i < table.getNumUniqueStrings(); i++) {
+                values.add(table.getString(i).getString());
+            }
+        }
+        return values;
+    }
+
+    // Document properties, such as the author, company and title, are removed rather than replaced, as nothing reads
+    // them. Dates and counts are kept.
+    private void removeDocumentProperties(Workbook workbook) {
+        if (workbook instanceof XSSFWorkbook) {
+            POIXMLProperties properties = ((XSSFWorkbook) workbook).getProperties();
+            PackagePropertiesPart coreProperties = properties.getCoreProperties().getUnderlyingProperties();
+            coreProperties.setCategoryProperty(Optional.empty());
+            coreProperties.setContentStatusProperty(Optional.empty());
+            coreProperties.setCreatorProperty(Optional.empty());
+            coreProperties.setDescriptionProperty(Optional.empty());
+            coreProperties.setIdentifierProperty(Optional.empty());
+            coreProperties.setKeywordsProperty(Optional.empty());
+            coreProperties.setLastModifiedByProperty(Optional.empty());
+            coreProperties.setSubjectProperty(Optional.empty());
+            coreProperties.setTitleProperty(Optional.empty());
+            org.openxmlformats.schemas.officeDocument.x2006.extendedProperties.CTProperties extendedProperties = properties.getExtendedProperties().getUnderlyingProperties();
+            if (extendedProperties.isSetCompany()) {
+                extendedProperties.unsetCompany();
+            }
+            if (extendedProperties.isSetManager()) {
+                extendedProperties.unsetManager();
+            }
+            if (extendedProperties.isSetHyperlinkBase()) {
+                extendedProperties.unsetHyperlinkBase();
+            }
+            org.openxmlformats.schemas.officeDocument.x2006.customProperties.CTProperties customProperties = properties.getCustomProperties().getUnderlyingProperties();
+            while (customProperties.sizeOfPropertyArray() > 0) {
+                customProperties.removeProperty(0);
+            }
+        } else if (workbook instanceof HSSFWorkbook) {
+            SummaryInformation summaryInformation = ((HSSFWorkbook) workbook).getSummaryInformation();
+            if (summaryInformation != null) {
+                summaryInformation.removeAuthor();
+                summaryInformation.removeComments();
+                summaryInformation.removeKeywords();
+                summaryInformation.removeLastAuthor();
+                summaryInformation.removeSubject();
+                summaryInformation.removeTemplate();
+                summaryInformation.removeTitle();
+            }
+            DocumentSummaryInformation documentSummaryInformation = ((HSSFWorkbook) workbook).getDocumentSummaryInformation();
+            if (documentSummaryInformation != null) {
+                documentSummaryInformation.removeCategory();
+                documentSummaryInformation.removeCompany();
+                documentSummaryInformation.removeManager();
+                documentSummaryInformation.removeCustomProperties();
+            }
+        }
+    }
+
+    private void anonymize(Sheet sheet) {
+        Set<Integer> keptColumns = new HashSet<>();
+        boolean isFirstHeaderRow = false;
+        boolean foundFirstHeaderRow = false;
+        for (Row row : sheet) {
+            if (isFirstHeaderRow) {
+                keptColumns = findKeptColumns(row);
+                foundFirstHeaderRow = true;
+            }
+            isFirstHeaderRow = !foundFirstHeaderRow && isSectionDelimiterRow(row);
+            for (Cell cell : row) {
+                if (!keptColumns.contains(cell.getColumnIndex())) {
+                    anonymize(cell);
+                } else if (cell.getCellType() == CellType.STRING) {
+                    remainingValues.add(cell.getStringCellValue());
+                }
+                if (cell.getHyperlink() != null) {
+                    anonymizeHyperlink(cell);
+                }
+                Comment comment = cell.getCellComment();
+                if (comment != null) {
+                    if (comment.getString() != null) {
+                        comment.setString(sheet.getWorkbook().getCreationHelper().createRichTextString(pseudonymizer.pseudonym(comment.getString().getString())));
+                    }
+                    if (comment.getAuthor() != null) {
+                        comment.setAuthor(pseudonymizer.pseudonym(comment.getAuthor()));
+                    }
+                }
+            }
+        }
+    }
+
+    // Links to places in the workbook are kept, as sheet names and cell references are. The scheme of other links is
+    // kept, so that they still open the way they did. The link is replaced rather than changed, as the address of an
+    // .xlsx link is held in a relationship of the sheet that changing the address does not update.
+    private void anonymizeHyperlink(Cell cell) {
+        Hyperlink hyperlink = cell.getHyperlink();
+        Hyperlink anonymized = cell.getSheet().getWorkbook().getCreationHelper().createHyperlink(hyperlink.getType());
+        String address = hyperlink.getAddress();
+        if (address != null && hyperlink.getType() != HyperlinkType.DOCUMENT) {
+            Matcher matcher = URI_SCHEME.matcher(address);
+            int schemeEnd = matcher.lookingAt() ? matcher.end() : 0;
+            address = address.substring(0, schemeEnd) + pseudonymizer.pseudonym(address.substring(schemeEnd));
+        }
+        anonymized.setAddress(address);
+        if (hyperlink.getLabel() != null) {
+            anonymized.setLabel(pseudonymizer.pseudonym(hyperlink.getLabel()));
+        }
+        cell.removeHyperlink();
+        if (hyperlink instanceof XSSFHyperlink) {
+            XSSFHyperlink xssfHyperlink = (XSSFHyperlink) hyperlink;
+            if (xssfHyperlink.getTooltip() != null) {
+                ((XSSFHyperlink) anonymized).setTooltip(pseudonymizer.pseudonym(xssfHyperlink.getTooltip()));
+            }
+            if (xssfHyperlink.getCTHyperlink().isSetId()) {
+                ((XSSFSheet) cell.getSheet()).getPackagePart().removeRelationship(xssfHyperlink.getCTHyperlink().getId());
+            }
+        }
+        cell.setHyperlink(anonymized);
+        anonymized.setLastRow(hyperlink.getLastRow());
+        anonymized.setLastColumn(hyperlink.getLastColumn());
+    }
+
+    private Set<Integer> findKeptColumns(Row firstHeaderRow) {
+        Set<Integer> keptColumns = new HashSet<>();
+        for (OperationConfigHeader header : EnumSet.complementOf(EnumSet.copyOf(ANONYMIZED_HEADERS))) {
+            for (Cell cell : firstHeaderRow) {
+                if (cell.getCellType() == CellType.STRING && cell.getStringCellValue().equals(header.getExcelHeader())) {
+                    keptColumns.add(cell.getColumnIndex());
+                }
+            }
+        }
+        return keptColumns;
+    }
+
+    private void anonymize(Cell cell) {
+        switch (cell.getCellType()) {
+            case STRING:
+                String value = cell.getStringCellValue();
+                if (isKeptValue(value)) {
+                    remainingValues.add(value);
+                } else {
+                    String pseudonym = pseudonymizer.pseudonym(value);
+                    replacedValues.add(value);
+                    remainingValues.add(pseudonym);
+                    // Blanking first drops the inline string of .xlsx cells written by streaming writers, which would
+                    // otherwise be kept next to the new value and still be read instead of it
+                    cell.setBlank();
+                    cell.setCellValue(pseudonym);
+                }
+                break;
+            case NUMERIC:
+                anonymizeNumber(cell);
+                break;
+            case FORMULA:
+                cell.setCellFormula(anonymizeFormula(cell.getCellFormula()));
+                break;
+            default:
+                // Blank, boolean and error cells carry no data
+                break;
+        }
+    }
+
+    // Pseudonyms keep punctuation, so delimiter rows and unknown headers with the Operation Config prefix stay as they
+    // are without special handling
+    private boolean isKeptValue(String value) {
+        return OperationConfigHeader.isKnownExcelOpConfigHeader(value);
+    }
+
+    // Numbers keep their number of digits before and after the decimal point. Whole numbers, such as IDs, get the
+    // pseudonym of their digits as a string, so an ID gets the same pseudonym in a text cell and in a number cell.
+    // Dates are numbers too, and get another date of the same precision.
+    private void anonymizeNumber(Cell cell) {
+        double value = cell.getNumericCellValue();
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return;
+        }
+        String digits = value == Math.rint(value) && Math.abs(value) < 1e15
+            ? Long.toString(Math.abs((long) value))
+            : BigDecimal.valueOf(Math.abs(value)).stripTrailingZeros().toPlainString();
+        String pseudonym = pseudonymizer.pseudonym(digits);
+        if (pseudonym.length() > 1 && pseudonym.charAt(0) == '0' && pseudonym.charAt(1) != '.') {
+            pseudonym = "1" + pseudonym.substring(1);
+        }
+        cell.setCellValue(Math.copySign(Double.parseDouble(pseudonym), value));
+    }
+
+    // Only the contents of string literals are replaced, so functions, references and operators stay as they are.
+    // Doubled quotes inside a literal are kept by the pseudonym, like all other punctuation.
+    private String anonymizeFormula(String formula) {
+        StringBuilder anonymized = new StringBuilder(formula.length());
+        int i = 0;
+        while (i < formula.length()) {
+            char c = formula.charAt(i++);
+            anonymized.append(c);
+            if (c != '"') {
+                continue;
+            }
+            int literalStart = i;
+            while (i < formula.length()) {
+                if (formula.charAt(i) == '"') {
+                    if (i + 1 < formula.length() && formula.charAt(i + 1) == '"') {
+                        i += 2;
+                        continue;
+                    }
+                    break;
+                }
+                i++;
+            }
+            anonymized.append(pseudonymizer.pseudonym(formula.substring(literalStart, i)));
+            if (i < formula.length()) {
+                anonymized.append(formula.charAt(i++));
+            }
+        }
+        return anonymized.toString();
+    }
+
+    private boolean isSectionDelimiterRow(Row row) {
+        Cell cell = row.getCell(0);
+        return cell != null && cell.getCellType() == CellType.STRING && cell.getStringCellValue().equals(SECTION_DELIMITER_ROW_VALUE);
+    }
+}
@@ -28,6 +28,7 @@
 
 package com.trivir.idmunit.testconverter.converter.model;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import lombok.Data;
 
 import java.util.List;
@@ -35,6 +36,7 @@ import java.util.List;
 @Data
 public class Connector {
 
+    @JsonDeserialize(using = StringPool.Deserializer.class)
     private String name;
     private List<ConnectorAttribute> attributes;
 }
@@ -28,6 +28,7 @@
 
 package com.trivir.idmunit.testconverter.converter.model;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import lombok.Data;
 
 import java.util.List;
@@ -35,7 +36,9 @@ import java.util.List;
 @Data
 public class ConnectorAttribute {
 
+    @JsonDeserialize(using = StringPool.Deserializer.class)
     private String name;
     private int groupNum;
+    @JsonDeserialize(contentUsing = StringPool.Deserializer.class)
     private List<String> meta = null;
 }
@@ -28,6 +28,8 @@
 
 package com.trivir.idmunit.testconverter.converter.model;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.Data;
 
 import java.util.ArrayList;
@@ -41,6 +43,8 @@ public class IdmUnitTest {
     private String title;
     private String desc;
     private Map<Integer, Float> columnWidths; //(Group Number, Width)
+    @JsonSerialize(contentUsing = SharedConnectors.ReferenceSerializer.class)
+    @JsonDeserialize(contentUsing = SharedConnectors.ReferenceDeserializer.class)
     private List<Connector> connectors = new ArrayList<>();
     private List<Operation> operations = new ArrayList<>();
 
@@ -28,6 +28,7 @@
 
 package com.trivir.idmunit.testconverter.converter.model;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import lombok.Data;
 
 import java.util.List;
@@ -36,15 +37,24 @@ import java.util.List;
 public class Operation {
 
     private String comment;
+    @JsonDeserialize(using = StringPool.Deserializer.class)
     private String operation;
+    @JsonDeserialize(using = StringPool.Deserializer.class)
     private String target;
+    @JsonDeserialize(using = StringPool.Deserializer.class)
     private String waitInterval;
+    @JsonDeserialize(using = StringPool.Deserializer.class)
     private String retryCount;
+    @JsonDeserialize(using = StringPool.Deserializer.class)
     private String disabled;
+    @JsonDeserialize(using = StringPool.Deserializer.class)
     private String failureExpected;
+    @JsonDeserialize(using = StringPool.Deserializer.class)
     private String critical;
+    @JsonDeserialize(using = StringPool.Deserializer.class)
     private String repeatRange;
 
     private List<OperationData> data = null;
+    @JsonDeserialize(contentUsing = StringPool.Deserializer.class)
     private List<String> meta = null;
 }
@@ -28,6 +28,7 @@
 
 package com.trivir.idmunit.testconverter.converter.model;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import lombok.Data;
 
 import java.util.List;
@@ -35,7 +36,10 @@ import java.util.List;
 @Data
 public class OperationData {
 
+    @JsonDeserialize(using = StringPool.Deserializer.class)
     private String attribute;
+    @JsonDeserialize(contentUsing = StringPool.ValueDeserializer.class)
     private List<String> value = null;
+    @JsonDeserialize(contentUsing = StringPool.Deserializer.class)
     private List<String> meta = null;
 }
@@ -0,0 +1,148 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.converter.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Connector definitions that the sheets of a workbook share. They are written once in the manifest, and a sheet refers
+ * to a shared definition by the connector name instead of repeating it. A sheet whose connector differs from the shared
+ * definition of that name keeps its own definition, which overrides the shared one for that sheet.
+ * <p>
+ * The shared connectors are passed to Jackson as the {@link #ATTRIBUTE} attribute of the object reader or writer, and
+ * without it every connector is written in full.
+ */
+public class SharedConnectors {
+
+    public static final String ATTRIBUTE = SharedConnectors.class.getName();
+    public static final SharedConnectors NONE = new SharedConnectors(Collections.emptyList());
+
+    private final Map<String, Connector> connectors = new LinkedHashMap<>();
+
+    public SharedConnectors(List<Connector> connectors) {
+        connectors.forEach(x -> this.connectors.put(x.getName(), x));
+    }
+
+    /**
+     * Shares every connector definition that the tests repeat, either in several sheets or within one. When a name has
+     * several definitions, the most repeated one is shared.
+     */
+    public static SharedConnectors of(List<IdmUnitTest> tests) {
+        Map<String, Map<Connector, Integer>> counts = new LinkedHashMap<>();
+        for (IdmUnitTest test : tests) {
+            if (test.getConnectors() != null) {
+                test.getConnectors().forEach(x -> counts.computeIfAbsent(x.getName(), k -> new LinkedHashMap<>()).merge(x, 1, Integer::sum));
+            }
+        }
+        List<Connector> shared = new ArrayList<>();
+        for (Map<Connector, Integer> definitions : counts.values()) {
+            Map.Entry<Connector, Integer> mostRepeated = Collections.max(definitions.entrySet(), Map.Entry.comparingByValue());
+            if (mostRepeated.getValue() > 1) {
+                shared.add(mostRepeated.getKey());
+            }
+        }
+        return new SharedConnectors(shared);
+    }
+
+    public List<Connector> getConnectors() {
+        return new ArrayList<>(connectors.values());
+    }
+
+    public boolean isEmpty() {
+        return connectors.isEmpty();
+    }
+
+    public boolean isShared(Connector connector) {
+        return connector.equals(connectors.get(connector.getName()));
+    }
+
+    /**
+     * @return the shared definition of the connector, or null if there is none
+     */
+    public Connector get(String name) {
+        return connectors.get(name);
+    }
+
+    /**
+     * Writes a connector as its name when it is shared.
+     */
+    public static class ReferenceSerializer extends StdSerializer<Connector> {
+
+        public ReferenceSerializer() {
+            super(Connector.class);
+        }
+
+        @Override
+        public void serialize(Connector value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            SharedConnectors shared = (SharedConnectors) provider.getAttribute(ATTRIBUTE);
+            if (shared != null && shared.isShared(value)) {
+                gen.writeString(value.getName());
+            } else {
+                provider.findValueSerializer(Connector.class).serialize(value, gen, provider);
+            }
+        }
+    }
+
+    /**
+     * Reads a connector name as the shared definition of that connector.
+     */
+    public static class ReferenceDeserializer extends StdDeserializer<Connector> {
+
+        public ReferenceDeserializer() {
+            super(Connector.class);
+        }
+
+        @Override
+        public Connector deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (p.hasToken(JsonToken.VALUE_STRING)) {
+                SharedConnectors shared = (SharedConnectors) ctxt.getAttribute(ATTRIBUTE);
+                Connector connector = shared == null ? null : shared.get(p.getText());
+                if (connector == null) {
+                    throw JsonMappingException.from(p, String.format("Connector '%s' refers to a shared connector that the manifest does not define.", p.getText()));
+                }
+                return connector;
+            }
+            return (Connector) ctxt.findRootValueDeserializer(ctxt.constructType(Connector.class)).deserialize(p, ctxt);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.converter.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StringDeserializer;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Makes the strings a test repeats in every operation, such as attribute, connector and target names, operation verbs
+ * and flags, share one instance, so that a test with many operations does not hold a copy of them per operation. A
+ * pool is meant for the conversion of one workbook, so that its sheets share them too, and is dropped once the workbook
+ * is converted. It is not shared between workbooks, as they are converted in parallel and a pool is not thread-safe.
+ * <p>
+ * The pool is passed to Jackson as the {@link #ATTRIBUTE} attribute of the object reader, and without it every string
+ * is read as is.
+ */
+public class StringPool {
+
+    public static final String ATTRIBUTE = StringPool.class.getName();
+
+    // Longer operation data values are seldom repeated, and pooling them would only grow the pool
+    static final int MAX_VALUE_LENGTH = 32;
+
+    private final Map<String, String> strings = new HashMap<>();
+
+    /**
+     * @return the pooled instance of the string, which is the string itself the first time it is seen
+     */
+    public String get(String string) {
+        if (string == null) {
+            return null;
+        }
+        String pooled = strings.putIfAbsent(string, string);
+        return pooled == null ? string : pooled;
+    }
+
+    /**
+     * Like {@link #get(String)}, but only for operation data values short enough to be repeated.
+     */
+    public String getValue(String value) {
+        return value == null || value.length() > MAX_VALUE_LENGTH ? value : get(value);
+    }
+
+    /**
+     * Reads a name or flag through the pool.
+     */
+    public static class Deserializer extends StdDeserializer<String> {
+
+        public Deserializer() {
+            super(String.class);
+        }
+
+        @Override
+        public String deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            String value = StringDeserializer.instance.deserialize(p, ctxt);
+            StringPool pool = (StringPool) ctxt.getAttribute(ATTRIBUTE);
+            return pool == null ? value : pool.get(value);
+        }
+    }
+
+    /**
+     * Reads an operation data value through the pool.
+     */
+    public static class ValueDeserializer extends StdDeserializer<String> {
+
+        public ValueDeserializer() {
+            super(String.class);
+        }
+
+        @Override
+        public String deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            String value = StringDeserializer.instance.deserialize(p, ctxt);
+            StringPool pool = (StringPool) ctxt.getAttribute(ATTRIBUTE);
+            return pool == null ? value : pool.getValue(value);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.jfr;
+
+import com.trivir.idmunit.testconverter.util.ConversionEvents;
+
+/**
+ * Creates the Flight Recorder events behind {@link ConversionEvents}. Only loaded when the JVM has the
+ * {@code jdk.jfr} module, so the rest of the converter still runs on Java 8 builds without it.
+ */
+public class JfrRecording implements ConversionEvents.Recording {
+
+    private final ConversionEvent event;
+
+    private JfrRecording(ConversionEvent event) {
+        this.event = event;
+    }
+
+    public static ConversionEvents.Recording begin(ConversionEvents.Type type) {
+        ConversionEvent event = createEvent(type);
+        if (!event.isEnabled()) {
+            return ConversionEvents.NOT_RECORDING;
+        }
+        event.begin();
+        return new JfrRecording(event);
+    }
+
+    @Override
+    public boolean isRecording() {
+        return true;
+    }
+
+    @Override
+    public void end(String workbook, String sheet, long rows, long bytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.workbook = workbook;
+            event.sheet = sheet;
+            event.rows = rows;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    private static ConversionEvent createEvent(ConversionEvents.Type type) {
+        switch (type) {
+            case WORKBOOK_LOAD:
+                return new WorkbookLoadEvent();
+            case SHEET_PARSE:
+                return new SheetParseEvent();
+            case LINT:
+                return new LintEvent();
+            case JSON_WRITE:
+                return new JsonWriteEvent();
+            case SHEET_WRITE:
+                return new SheetWriteEvent();
+            case FORMULA_EVALUATION:
+                return new FormulaEvaluationEvent();
+            default:
+                throw new IllegalArgumentException("Unknown event type " + type);
+        }
+    }
+}
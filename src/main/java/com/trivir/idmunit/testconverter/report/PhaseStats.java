@@ -0,0 +1,63 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.report;
+
+import lombok.Data;
+
+/**
+ * The wall time and heap allocated by one phase of a conversion, summed over every time the phase ran.
+ */
+@Data
+public class PhaseStats {
+
+    // excel2json
+    public static final String LOAD = "load";
+    public static final String PARSE = "parse";
+    public static final String MAP = "map";
+    public static final String SERIALIZE = "serialize";
+    public static final String WRITE = "write";
+    // json2excel
+    public static final String READ = "read";
+    public static final String WRITE_SHEET = "writeSheet";
+    public static final String EVALUATE_FORMULAS = "evaluateFormulas";
+    public static final String SAVE = "save";
+
+    private long nanos;
+    // -1 if the JVM cannot measure the memory allocated by a thread
+    private long allocatedBytes;
+
+    public void add(long nanos, long allocatedBytes) {
+        this.nanos += nanos;
+        this.allocatedBytes = this.allocatedBytes < 0 || allocatedBytes < 0 ? -1 : this.allocatedBytes + allocatedBytes;
+    }
+
+    public void add(PhaseStats other) {
+        add(other.getNanos(), other.getAllocatedBytes());
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.report;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class RunTotals {
+
+    private int workbooks;
+    private int converted;
+    private int skipped;
+    private int failed;
+    private int sheets;
+    private int warnings;
+    private int errors;
+    private long inputBytes;
+    private long outputBytes;
+    // Wall time of the run, or the summed wall times of the shards of a merged report
+    private long durationMillis;
+    // Highest peak of any workbook, only collected with --report
+    private Long peakHeapBytes;
+
+    public static RunTotals of(List<WorkbookReport> workbookReports, long durationMillis) {
+        RunTotals totals = new RunTotals();
+        totals.setDurationMillis(durationMillis);
+        for (WorkbookReport report : workbookReports) {
+            totals.workbooks++;
+            if (report.getStatus() == WorkbookStatus.CONVERTED) {
+                totals.converted++;
+            } else if (report.getStatus() == WorkbookStatus.SKIPPED) {
+                totals.skipped++;
+            } else if (report.getStatus() == WorkbookStatus.FAILED) {
+                totals.failed++;
+            }
+            totals.sheets += report.getSheets();
+            totals.warnings += report.getWarnings();
+            totals.errors += report.getErrors();
+            totals.inputBytes += report.getInputBytes();
+            if (report.getOutputBytes() != null) {
+                totals.outputBytes += report.getOutputBytes();
+            }
+            if (report.getPeakHeapBytes() != null) {
+                totals.peakHeapBytes = totals.peakHeapBytes == null ? report.getPeakHeapBytes() : Math.max(totals.peakHeapBytes, report.getPeakHeapBytes());
+            }
+        }
+        return totals;
+    }
+}
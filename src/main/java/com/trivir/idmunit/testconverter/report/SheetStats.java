@@ -0,0 +1,56 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.report;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.trivir.idmunit.testconverter.util.PhaseTimer;
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+public class SheetStats {
+
+    @JsonIgnore
+    private String workbook;
+    private String sheet;
+    private Map<String, PhaseStats> phases = new LinkedHashMap<>();
+    private int rows;
+    private long cells;
+    private int warnings;
+
+    public PhaseTimer time(String phase) {
+        return new PhaseTimer(phases.computeIfAbsent(phase, x -> new PhaseStats()));
+    }
+
+    public long totalNanos() {
+        return phases.values().stream().mapToLong(PhaseStats::getNanos).sum();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.report;
+
+import lombok.Value;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prints the statistics that --stats collects: time and allocations per phase summed over all workbooks, totals and
+ * throughput in rows and input megabytes per second for the run, and the slowest sheets.
+ */
+public class StatsSummary {
+
+    public static final int DEFAULT_NUM_SLOWEST_SHEETS = 10;
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final double BYTES_PER_MEBIBYTE = 1024 * 1024;
+    // The same megabyte as the MB/s of the progress display
+    private static final double BYTES_PER_MB = 1_000_000;
+
+    public static void print(PrintWriter out, List<WorkbookReport> workbooks, long wallNanos, int numSlowestSheets) {
+        Map<String, PhaseStats> phaseTotals = new LinkedHashMap<>();
+        List<SlowSheet> sheets = new ArrayList<>();
+        long totalRows = 0;
+        long totalCells = 0;
+        long totalWarnings = 0;
+        long totalInputBytes = 0;
+        for (WorkbookReport workbook : workbooks) {
+            totalInputBytes += workbook.getInputBytes();
+            WorkbookStats stats = workbook.getStats();
+            if (stats == null) {
+                continue;
+            }
+            stats.getPhases().forEach((phase, phaseStats) -> phaseTotals.computeIfAbsent(phase, x -> new PhaseStats()).add(phaseStats));
+            for (SheetStats sheet : stats.getSheets()) {
+                sheet.getPhases().forEach((phase, phaseStats) -> phaseTotals.computeIfAbsent(phase, x -> new PhaseStats()).add(phaseStats));
+                sheets.add(new SlowSheet(workbook.getWorkbook(), sheet));
+                totalRows += sheet.getRows();
+                totalCells += sheet.getCells();
+                totalWarnings += sheet.getWarnings();
+            }
+        }
+        double wallSeconds = wallNanos / NANOS_PER_SECOND;
+        out.println();
+        out.println(String.format(Locale.ROOT, "Statistics: %d workbook(s), %d sheet(s), %,d rows, %,d cells and %,d warnings from %,.1f MB in %.3f s (%,.0f rows/s, %,.1f MB/s).",
+            workbooks.size(), sheets.size(), totalRows, totalCells, totalWarnings, totalInputBytes / BYTES_PER_MB, wallSeconds,
+            wallSeconds > 0 ? totalRows / wallSeconds : 0, wallSeconds > 0 ? totalInputBytes / BYTES_PER_MB / wallSeconds : 0));
+        long totalPhaseNanos = phaseTotals.values().stream().mapToLong(PhaseStats::getNanos).sum();
+        out.println(String.format(Locale.ROOT, "    %-18s %12s %7s %14s", "Phase", "Time", "Share", "Allocated"));
+        phaseTotals.forEach((phase, phaseStats) -> out.println(String.format(Locale.ROOT, "    %-18s %10.3f s %6.1f%% %14s",
+            phase,
+            phaseStats.getNanos() / NANOS_PER_SECOND,
+            totalPhaseNanos > 0 ? 100.0 * phaseStats.getNanos() / totalPhaseNanos : 0,
+            phaseStats.getAllocatedBytes() < 0 ? "n/a" : String.format(Locale.ROOT, "%,.1f MiB", phaseStats.getAllocatedBytes() / BYTES_PER_MEBIBYTE))));
+        if (numSlowestSheets > 0 && !sheets.isEmpty()) {
+            out.println(String.format(Locale.ROOT, "Slowest %d sheet(s):", Math.min(numSlowestSheets, sheets.size())));
+            sheets.stream()
+                .sorted(Comparator.comparingLong((SlowSheet x) -> x.getStats().totalNanos()).reversed())
+                .limit(numSlowestSheets)
+                .forEach(x -> out.println(String.format(Locale.ROOT, "    %10.3f s  %s / %s (%,d rows, %,d cells)",
+                    x.getStats().totalNanos() / NANOS_PER_SECOND, x.getWorkbook(), x.getStats().getSheet(), x.getStats().getRows(), x.getStats().getCells())));
+        }
+        out.flush();
+    }
+
+    @Value
+    private static class SlowSheet {
+        String workbook;
+        SheetStats stats;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.report;
+
+import lombok.Data;
+
+@Data
+public class WorkbookReport {
+
+    private String workbook;
+    private int index; // Position of the workbook in the full (unsharded) work list
+    private WorkbookStatus status;
+    private String engine; // The POI workbook implementation, XSSF or HSSF
+    private long durationMillis;
+    // Only collected with --report
+    private Long peakHeapBytes;
+    private long inputBytes;
+    // Null if nothing was written, as with --lint-only
+    private Long outputBytes;
+    private int sheets;
+    private int warnings;
+    private int errors;
+    // Only collected with --stats
+    private WorkbookStats stats;
+}
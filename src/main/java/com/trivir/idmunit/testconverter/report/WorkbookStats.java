@@ -0,0 +1,64 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.report;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.trivir.idmunit.testconverter.util.PhaseTimer;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Where the time and memory of converting one workbook went, for the phases that concern the whole workbook and per
+ * sheet for the others.
+ */
+@Data
+public class WorkbookStats {
+
+    // Only used to label Flight Recorder events, the report already names the workbook
+    @JsonIgnore
+    private String workbook;
+    private Map<String, PhaseStats> phases = new LinkedHashMap<>();
+    private List<SheetStats> sheets = new ArrayList<>();
+
+    public PhaseTimer time(String phase) {
+        return new PhaseTimer(phases.computeIfAbsent(phase, x -> new PhaseStats()));
+    }
+
+    public SheetStats addSheet(String sheetName) {
+        SheetStats sheetStats = new SheetStats();
+        sheetStats.setWorkbook(workbook);
+        sheetStats.setSheet(sheetName);
+        sheets.add(sheetStats);
+        return sheetStats;
+    }
+}
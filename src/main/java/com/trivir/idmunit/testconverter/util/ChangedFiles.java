@@ -0,0 +1,158 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.util;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Collects the set of files that changed, either according to the local git repository or to a list of paths from
+ * another source, so that a conversion can be limited to the workbooks that actually changed.
+ */
+public class ChangedFiles implements Predicate<Path> {
+
+    private final Set<Path> paths = new HashSet<>();
+
+    private ChangedFiles() {
+    }
+
+    /**
+     * Returns the files that differ between {@code revision} and the working tree of the git repository that contains
+     * {@code directory}, including staged, unstaged and untracked (but not ignored) files.
+     */
+    public static ChangedFiles fromGit(Path directory, String revision) {
+        Path repositoryRoot = Paths.get(runGit(directory, "rev-parse", "--show-toplevel").trim());
+        ChangedFiles changedFiles = new ChangedFiles();
+        for (String path : runGit(directory, "diff", "--name-only", "-z", revision, "--").split("\0")) {
+            changedFiles.add(repositoryRoot, path);
+        }
+        for (String path : runGit(directory, "ls-files", "--others", "--exclude-standard", "--full-name", "-z").split("\0")) {
+            changedFiles.add(repositoryRoot, path);
+        }
+        return changedFiles;
+    }
+
+    /**
+     * Reads one path per line, relative to {@code baseDirectory} unless absolute. Blank lines are ignored.
+     */
+    public static ChangedFiles fromReader(BufferedReader reader, Path baseDirectory) throws IOException {
+        ChangedFiles changedFiles = new ChangedFiles();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            changedFiles.add(baseDirectory, line.trim());
+        }
+        return changedFiles;
+    }
+
+    private void add(Path baseDirectory, String path) {
+        if (path.isEmpty()) {
+            return;
+        }
+        try {
+            paths.add(normalize(baseDirectory.resolve(path)));
+        } catch (InvalidPathException e) {
+            // Not a path on this file system, so it cannot match any workbook either
+        }
+    }
+
+    @Override
+    public boolean test(Path path) {
+        return paths.contains(normalize(path));
+    }
+
+    private static Path normalize(Path path) {
+        // Deleted files cannot be resolved, but then they won't be in the work list either
+        if (Files.exists(path)) {
+            try {
+                return path.toRealPath();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return path.toAbsolutePath().normalize();
+    }
+
+    private static String runGit(Path directory, String... args) {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        command.addAll(Arrays.asList(args));
+        Path errorPath = null;
+        try {
+            // Standard error goes to a file, as git blocks once either pipe is full while only the other one is read
+            errorPath = Files.createTempFile("git", ".err");
+            Process process = new ProcessBuilder(command)
+                .directory(directory.toFile())
+                .redirectError(errorPath.toFile())
+                .start();
+            String output = readFully(process.getInputStream());
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                String error = new String(Files.readAllBytes(errorPath), StandardCharsets.UTF_8);
+                throw new IllegalArgumentException(String.format("'%s' failed in '%s' with exit code %d: %s", String.join(" ", command), directory, exitCode, error.trim()));
+            }
+            return output;
+        } catch (IOException e) {
+            throw new IllegalArgumentException(String.format("Could not run '%s': %s", String.join(" ", command), e.getMessage()), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            if (errorPath != null) {
+                try {
+                    Files.deleteIfExists(errorPath);
+                } catch (IOException e) {
+                    // Left in the temporary directory
+                }
+            }
+        }
+    }
+
+    private static String readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int numRead;
+        while ((numRead = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, numRead);
+        }
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
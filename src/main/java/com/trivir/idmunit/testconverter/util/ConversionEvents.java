@@ -0,0 +1,91 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.util;
+
+import com.trivir.idmunit.testconverter.jfr.JfrRecording;
+
+/**
+ * Emits JDK Flight Recorder events for the phases of a conversion, so a recording started with
+ * {@code -XX:StartFlightRecording} shows them next to GC and I/O activity. When the JVM has no Flight Recorder, or the
+ * events are not enabled in the running recording, {@link #begin(Type)} returns {@link #NOT_RECORDING} and nothing is
+ * allocated or measured.
+ */
+public class ConversionEvents {
+
+    public enum Type {
+        WORKBOOK_LOAD,
+        SHEET_PARSE,
+        LINT,
+        JSON_WRITE,
+        SHEET_WRITE,
+        FORMULA_EVALUATION
+    }
+
+    public interface Recording {
+        /**
+         * For callers that must do extra work to fill in the event fields, such as sizing a file.
+         */
+        boolean isRecording();
+
+        void end(String workbook, String sheet, long rows, long bytes);
+    }
+
+    public static final Recording NOT_RECORDING = new Recording() {
+        @Override
+        public boolean isRecording() {
+            return false;
+        }
+
+        @Override
+        public void end(String workbook, String sheet, long rows, long bytes) {
+        }
+    };
+
+    private static final boolean FLIGHT_RECORDER_AVAILABLE = isFlightRecorderAvailable();
+
+    private ConversionEvents() {
+    }
+
+    public static Recording begin(Type type) {
+        if (!FLIGHT_RECORDER_AVAILABLE) {
+            return NOT_RECORDING;
+        }
+        return JfrRecording.begin(type);
+    }
+
+    private static boolean isFlightRecorderAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            // Java 8 builds before 8u262 do not have the jdk.jfr API
+            return false;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import lombok.Data;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An append-only record of the work a conversion run has finished, one JSON object per line, so that an interrupted
+ * run can be resumed. Each sheet is recorded once its file has been written, and each workbook once its output
+ * directory is in place. Entries carry the SHA-256 hash of the workbook they were converted from and are ignored
+ * once the workbook changes.
+ */
+public class ConversionJournal implements Closeable {
+
+    private final Map<String, Map<String, Entry>> sheetsByWorkbookHash = new HashMap<>();
+    private final Set<String> completedWorkbookHashes = new HashSet<>();
+    private final BufferedWriter writer;
+
+    private ConversionJournal(BufferedWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Opens the journal at {@code journalPath}. When resuming, the entries of the previous run are loaded and new
+     * entries are appended to them, otherwise the journal is started over.
+     */
+    public static ConversionJournal open(Path journalPath, boolean resume) throws IOException {
+        List<Entry> previousEntries = new ArrayList<>();
+        if (resume && Files.exists(journalPath)) {
+            for (String line : Files.readAllLines(journalPath, StandardCharsets.UTF_8)) {
+                try {
+                    previousEntries.add(JsonUtils.getMapper().readValue(line, Entry.class));
+                } catch (JsonProcessingException e) {
+                    // The last line is cut short if the previous run was killed while writing it
+                }
+            }
+        }
+        BufferedWriter writer = resume
+            ? Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)
+            : Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8);
+        ConversionJournal journal = new ConversionJournal(writer);
+        previousEntries.forEach(journal::load);
+        return journal;
+    }
+
+    private void load(Entry entry) {
+        String key = key(entry.getWorkbook(), entry.getHash());
+        if (Boolean.TRUE.equals(entry.getCompleted())) {
+            completedWorkbookHashes.add(key);
+        } else if (entry.getSheet() != null) {
+            sheetsByWorkbookHash.computeIfAbsent(key, x -> new LinkedHashMap<>()).put(entry.getSheet(), entry);
+        }
+    }
+
+    public boolean isCompleted(String workbook, String hash) {
+        return completedWorkbookHashes.contains(key(workbook, hash));
+    }
+
+    /**
+     * Returns the sheets of the workbook that were recorded by a previous run, by sheet name in the order they were converted.
+     */
+    public Map<String, Entry> getCompletedSheets(String workbook, String hash) {
+        return sheetsByWorkbookHash.getOrDefault(key(workbook, hash), new LinkedHashMap<>());
+    }
+
+    public synchronized void recordSheet(String workbook, String hash, String sheet, List<String> warnings) throws IOException {
+        Entry entry = new Entry();
+        entry.setWorkbook(workbook);
+        entry.setHash(hash);
+        entry.setSheet(sheet);
+        entry.setWarnings(warnings.isEmpty() ? null : new ArrayList<>(warnings));
+        append(entry);
+    }
+
+    public synchronized void recordCompleted(String workbook, String hash) throws IOException {
+        Entry entry = new Entry();
+        entry.setWorkbook(workbook);
+        entry.setHash(hash);
+        entry.setCompleted(true);
+        append(entry);
+    }
+
+    private void append(Entry entry) throws IOException {
+        writer.write(JsonUtils.getMapper().writeValueAsString(entry));
+        writer.newLine();
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private static String key(String workbook, String hash) {
+        return workbook + "\n" + hash;
+    }
+
+    @Data
+    public static class Entry {
+
+        private String workbook;
+        private String hash;
+        private String sheet;
+        private List<String> warnings;
+        private Boolean completed;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.util;
+
+import lombok.Value;
+import picocli.CommandLine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs conversion jobs on a fixed pool of worker threads, ordered by estimated heap cost with the largest first so
+ * that a big workbook never ends up as the last, lone job of a run.
+ * <p>
+ * Before a job starts it reserves its estimated cost from a shared byte budget and gives it back when it finishes,
+ * so several huge workbooks are never converted at the same time unless they fit in the heap together. A job that
+ * is estimated to cost more than the whole budget reserves all of it and runs alone. Part of the budget can be set
+ * aside for memory that outlives the jobs.
+ */
+public class ConversionScheduler implements AutoCloseable {
+
+    public static final String DEFAULT_HEAP_BUDGET = "70%";
+
+    // Rough ratios of heap used while converting to the size of the input on disk. XLSX is zip compressed XML, and
+    // its POI object model is by far the largest.
+    public static final int XLSX_HEAP_FACTOR = 40;
+    public static final int XLS_HEAP_FACTOR = 8;
+    public static final int JSON_HEAP_FACTOR = 6;
+
+    // The semaphore counts kibibytes so that budgets above 2 GiB fit in its int permits
+    private static final int BYTES_PER_PERMIT = 1024;
+
+    private final int numThreads;
+    private int totalPermits;
+    private final Semaphore permits;
+    private final ExecutorService executor;
+
+    public ConversionScheduler(int numThreads, long budgetBytes) {
+        this.numThreads = numThreads <= 0 ? Runtime.getRuntime().availableProcessors() : numThreads;
+        this.totalPermits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, budgetBytes / BYTES_PER_PERMIT));
+        this.permits = new Semaphore(totalPermits, true);
+        AtomicInteger threadNum = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.numThreads, runnable -> {
+            Thread thread = new Thread(runnable, "converter-" + threadNum.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    public boolean isParallel() {
+        return numThreads > 1;
+    }
+
+    /**
+     * Sets aside part of the budget for memory that outlives the jobs, such as a cache they share, so that the jobs
+     * only share what is left. Must be called before the jobs run. At least one kibibyte is always left.
+     */
+    public void reserve(long bytes) {
+        int reservedPermits = (int) Math.min(totalPermits - 1, bytes / BYTES_PER_PERMIT);
+        if (reservedPermits <= 0) {
+            return;
+        }
+        if (!permits.tryAcquire(reservedPermits)) {
+            throw new IllegalStateException("The heap budget can only be reserved before jobs run.");
+        }
+        totalPermits -= reservedPermits;
+    }
+
+    /**
+     * Runs all jobs and returns their results in the order the jobs were given, regardless of the order they ran in.
+     * If a job throws, the remaining jobs are cancelled and the exception is rethrown.
+     */
+    public <T> List<T> runAll(List<Job<T>> jobs) {
+        List<Integer> largestFirst = new ArrayList<>();
+        for (int i = 0; i < jobs.size(); i++) {
+            largestFirst.add(i);
+        }
+        largestFirst.sort(Comparator.comparingLong((Integer i) -> jobs.get(i).getEstimatedBytes()).reversed());
+        List<Future<T>> futures = new ArrayList<>(Collections.nCopies(jobs.size(), null));
+        for (int i : largestFirst) {
+            Job<T> job = jobs.get(i);
+            futures.set(i, executor.submit(() -> runWithBudget(job)));
+        }
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(x -> x.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            futures.forEach(x -> x.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+        return results;
+    }
+
+    private <T> T runWithBudget(Job<T> job) throws Exception {
+        int jobPermits = (int) Math.min(totalPermits, Math.max(1, job.getEstimatedBytes() / BYTES_PER_PERMIT));
+        permits.acquire(jobPermits);
+        try {
+            return job.getTask().call();
+        } finally {
+            permits.release(jobPermits);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Parses a heap budget given either as a percentage of the maximum heap size (-Xmx), e.g. {@code 70%}, or as an
+     * absolute size with an optional k, m or g suffix, e.g. {@code 1536m}.
+     */
+    public static long parseHeapBudget(String value) {
+        String budget = value.trim().toLowerCase(Locale.ROOT);
+        try {
+            if (budget.endsWith("%")) {
+                double percentage = Double.parseDouble(budget.substring(0, budget.length() - 1));
+                if (percentage <= 0 || percentage > 100) {
+                    throw new IllegalArgumentException(String.format("Invalid heap budget '%s': percentage must be greater than 0 and at most 100.", value));
+                }
+                return (long) (Runtime.getRuntime().maxMemory() * percentage / 100);
+            }
+            long multiplier = 1;
+            if (budget.endsWith("k")) {
+                multiplier = 1024L;
+            } else if (budget.endsWith("m")) {
+                multiplier = 1024L * 1024;
+            } else if (budget.endsWith("g")) {
+                multiplier = 1024L * 1024 * 1024;
+            }
+            if (multiplier != 1) {
+                budget = budget.substring(0, budget.length() - 1);
+            }
+            long bytes = Long.parseLong(budget) * multiplier;
+            if (bytes <= 0) {
+                throw new IllegalArgumentException(String.format("Invalid heap budget '%s': must be greater than 0.", value));
+            }
+            return bytes;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Invalid heap budget '%s': expected a percentage such as 70%% or a size such as 1536m.", value));
+        }
+    }
+
+    public static long estimateWorkbookHeapBytes(String workbookFileName, long fileSize) {
+        if (workbookFileName.toLowerCase(Locale.ROOT).endsWith(".xlsx")) {
+            return fileSize * XLSX_HEAP_FACTOR;
+        }
+        return fileSize * XLS_HEAP_FACTOR;
+    }
+
+    @Value
+    public static class Job<T> {
+        String name;
+        long estimatedBytes;
+        Callable<T> task;
+    }
+
+    public static class HeapBudgetConverter implements CommandLine.ITypeConverter<Long> {
+        @Override
+        public Long convert(String value) {
+            try {
+                return parseHeapBudget(value);
+            } catch (IllegalArgumentException e) {
+                throw new CommandLine.TypeConversionException(e.getMessage());
+            }
+        }
+    }
+}
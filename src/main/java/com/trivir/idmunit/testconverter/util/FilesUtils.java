@@ -30,8 +30,10 @@ package com.trivir.idmunit.testconverter.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Comparator;
 import java.util.stream.Stream;
 
@@ -48,4 +50,70 @@ public class FilesUtils {
             }
         }
     }
+
+    /**
+     * Replaces the directory {@code target} (if it exists) with {@code staging}. The old directory is first renamed
+     * out of the way, so that apart from the moment between the two renames a complete directory is always in place.
+     */
+    public static void replaceDirectory(Path staging, Path target) throws IOException {
+        Path backup = target.resolveSibling(target.getFileName() + ".old");
+        deleteDirectoryIfExists(backup);
+        if (Files.exists(target)) {
+            moveAtomically(target, backup);
+        }
+        moveAtomically(staging, target);
+        deleteDirectoryIfExists(backup);
+    }
+
+    /**
+     * Writes a file that other threads or processes may be writing at the same time. The content is written to a
+     * temporary file next to {@code target} that is then renamed, so that readers never see a partly written file.
+     */
+    public static void writeAtomically(Path target, byte[] content) throws IOException {
+        Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporary, content);
+            moveAtomically(temporary, target);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target);
+        }
+    }
+
+    public static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static long directorySize(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files
+                .filter(Files::isRegularFile)
+                .mapToLong(FilesUtils::size)
+                .sum();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static String getExtension(Path file) {
+        String fileName = file.getFileName().toString();
+        int dotIndex = fileName.lastIndexOf('.');
+        return dotIndex <= 0 ? "" : fileName.substring(dotIndex);
+    }
+
+    public static String stripExtension(Path file) {
+        String fileName = file.getFileName().toString();
+        return fileName.substring(0, fileName.length() - getExtension(file).length());
+    }
 }
@@ -0,0 +1,114 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public class HashUtils {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    public static String sha256(Path file) {
+        try (DigestInputStream inputStream = new DigestInputStream(Files.newInputStream(file), newSha256Digest())) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            //noinspection StatementWithEmptyBody
+            while (inputStream.read(buffer) != -1) {
+            }
+            return toHex(inputStream.getMessageDigest().digest());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Wraps a stream so that the SHA-256 hash of its content is computed while it is read.
+     */
+    public static Sha256InputStream sha256(InputStream inputStream) {
+        return new Sha256InputStream(inputStream);
+    }
+
+    public static String sha256(byte[] bytes) {
+        return toHex(newSha256Digest().digest(bytes));
+    }
+
+    public static class Sha256InputStream extends DigestInputStream {
+
+        private String hash;
+
+        Sha256InputStream(InputStream inputStream) {
+            super(inputStream, newSha256Digest());
+        }
+
+        /**
+         * @return the hash of the whole content, reading whatever the reader of the stream left unread
+         */
+        public String getHash() throws IOException {
+            if (hash == null) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                //noinspection StatementWithEmptyBody
+                while (read(buffer) != -1) {
+                }
+                hash = toHex(getMessageDigest().digest());
+            }
+            return hash;
+        }
+
+        // Readers that close the stream before its end still get it hashed in full
+        @Override
+        public void close() throws IOException {
+            getHash();
+            super.close();
+        }
+    }
+
+    private static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Samples the used heap on a background thread, so that each job can report the peak heap seen while it ran. The heap
+ * is shared, so in a parallel run the peak of a job includes what the jobs running next to it were using.
+ */
+public class HeapSampler implements AutoCloseable {
+
+    public static final long DEFAULT_INTERVAL_MILLIS = 50;
+
+    private final MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+    private final Set<Tracker> trackers = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService executor;
+
+    public HeapSampler() {
+        this(DEFAULT_INTERVAL_MILLIS);
+    }
+
+    public HeapSampler(long intervalMillis) {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "heap-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::sample, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts tracking the peak heap until the returned tracker is closed.
+     */
+    public Tracker track() {
+        Tracker tracker = new Tracker();
+        tracker.update(getUsedHeapBytes());
+        trackers.add(tracker);
+        return tracker;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void sample() {
+        long usedHeapBytes = getUsedHeapBytes();
+        trackers.forEach(x -> x.update(usedHeapBytes));
+    }
+
+    private long getUsedHeapBytes() {
+        return memoryMXBean.getHeapMemoryUsage().getUsed();
+    }
+
+    public class Tracker implements AutoCloseable {
+
+        private final AtomicLong peakBytes = new AtomicLong();
+
+        private void update(long usedHeapBytes) {
+            peakBytes.accumulateAndGet(usedHeapBytes, Math::max);
+        }
+
+        public long getPeakBytes() {
+            return peakBytes.get();
+        }
+
+        @Override
+        public void close() {
+            trackers.remove(this);
+            update(getUsedHeapBytes());
+        }
+    }
+}
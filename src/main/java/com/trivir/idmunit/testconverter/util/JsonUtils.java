@@ -35,6 +35,9 @@ import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.core.util.Separators;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 
 import java.io.IOException;
 
@@ -42,11 +45,20 @@ public class JsonUtils {
 
     private static final ObjectMapper OBJECT_MAPPER;
     private static final ObjectWriter OBJECT_WRITER;
+    private static final ObjectWriter TABLE_WRITER;
+    private static final ObjectMapper SMILE_MAPPER;
+    private static final ObjectMapper CBOR_MAPPER;
 
     static {
         OBJECT_MAPPER = new ObjectMapper();
         OBJECT_MAPPER.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        SMILE_MAPPER = new ObjectMapper(new SmileFactory());
+        SMILE_MAPPER.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        // The self-describe tag lets readers tell CBOR apart from the other encodings
+        CBOR_MAPPER = new ObjectMapper(CBORFactory.builder().enable(CBORGenerator.Feature.WRITE_TYPE_HEADER).build());
+        CBOR_MAPPER.setSerializationInclusion(JsonInclude.Include.NON_NULL);
         OBJECT_WRITER = OBJECT_MAPPER.writer(new NormalPrettyPrinter(4));
+        TABLE_WRITER = OBJECT_MAPPER.writer(new TablePrettyPrinter(4, 2));
     }
 
     public static ObjectMapper getMapper() {
@@ -57,6 +69,21 @@ public class JsonUtils {
         return OBJECT_WRITER;
     }
 
+    /**
+     * A writer that puts everything nested more than two levels deep on a single line, such as the rows of a table.
+     */
+    public static ObjectWriter getTableWriter() {
+        return TABLE_WRITER;
+    }
+
+    public static ObjectMapper getSmileMapper() {
+        return SMILE_MAPPER;
+    }
+
+    public static ObjectMapper getCborMapper() {
+        return CBOR_MAPPER;
+    }
+
 
     public static class NormalPrettyPrinter extends DefaultPrettyPrinter {
 
@@ -113,4 +140,106 @@ public class JsonUtils {
             g.writeRaw('}');
         }
     }
+
+    /**
+     * Indents like {@link NormalPrettyPrinter} down to a given depth, and writes any object or array nested deeper on
+     * one line without spaces.
+     */
+    public static class TablePrettyPrinter extends NormalPrettyPrinter {
+
+        private final int maxIndentedDepth;
+        private int depth;
+
+        public TablePrettyPrinter(int indentNumSpaces, int maxIndentedDepth) {
+            super(indentNumSpaces);
+            this.maxIndentedDepth = maxIndentedDepth;
+        }
+
+        public TablePrettyPrinter(TablePrettyPrinter base) {
+            super(base);
+            this.maxIndentedDepth = base.maxIndentedDepth;
+        }
+
+        @Override
+        public TablePrettyPrinter createInstance() {
+            return new TablePrettyPrinter(this);
+        }
+
+        @Override
+        public void writeStartObject(JsonGenerator g) throws IOException {
+            if (++depth > maxIndentedDepth) {
+                g.writeRaw('{');
+            } else {
+                super.writeStartObject(g);
+            }
+        }
+
+        @Override
+        public void beforeObjectEntries(JsonGenerator g) throws IOException {
+            if (depth <= maxIndentedDepth) {
+                super.beforeObjectEntries(g);
+            }
+        }
+
+        @Override
+        public void writeObjectFieldValueSeparator(JsonGenerator g) throws IOException {
+            if (depth > maxIndentedDepth) {
+                g.writeRaw(':');
+            } else {
+                super.writeObjectFieldValueSeparator(g);
+            }
+        }
+
+        @Override
+        public void writeObjectEntrySeparator(JsonGenerator g) throws IOException {
+            if (depth > maxIndentedDepth) {
+                g.writeRaw(',');
+            } else {
+                super.writeObjectEntrySeparator(g);
+            }
+        }
+
+        @Override
+        public void writeEndObject(JsonGenerator g, int nrOfEntries) throws IOException {
+            if (depth-- > maxIndentedDepth) {
+                g.writeRaw('}');
+            } else {
+                super.writeEndObject(g, nrOfEntries);
+            }
+        }
+
+        @Override
+        public void writeStartArray(JsonGenerator g) throws IOException {
+            if (++depth > maxIndentedDepth) {
+                g.writeRaw('[');
+            } else {
+                super.writeStartArray(g);
+            }
+        }
+
+        @Override
+        public void beforeArrayValues(JsonGenerator g) throws IOException {
+            if (depth <= maxIndentedDepth) {
+                super.beforeArrayValues(g);
+            }
+        }
+
+        @Override
+        public void writeArrayValueSeparator(JsonGenerator g) throws IOException {
+            if (depth > maxIndentedDepth) {
+                g.writeRaw(',');
+            } else {
+                super.writeArrayValueSeparator(g);
+            }
+        }
+
+        @Override
+        public void writeEndArray(JsonGenerator g, int nrOfValues) throws IOException {
+            if (depth-- > maxIndentedDepth) {
+                g.writeRaw(']');
+            } else {
+                super.writeEndArray(g, nrOfValues);
+            }
+        }
+    }
 }
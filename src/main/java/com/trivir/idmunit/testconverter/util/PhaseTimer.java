@@ -0,0 +1,81 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.util;
+
+import com.trivir.idmunit.testconverter.report.PhaseStats;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures one run of a phase on the current thread, from its creation until {@link #stop()}, and adds the wall time
+ * and the bytes the thread allocated in between to the phase's {@link PhaseStats}.
+ */
+public class PhaseTimer {
+
+    // Allocation counting is only available on HotSpot based JVMs
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = getThreadMXBean();
+
+    private final PhaseStats phaseStats;
+    private final long startNanos;
+    private final long startAllocatedBytes;
+
+    public PhaseTimer(PhaseStats phaseStats) {
+        this.phaseStats = phaseStats;
+        this.startAllocatedBytes = currentThreadAllocatedBytes();
+        this.startNanos = System.nanoTime();
+    }
+
+    public void stop() {
+        long nanos = System.nanoTime() - startNanos;
+        long allocatedBytes = startAllocatedBytes < 0 ? -1 : currentThreadAllocatedBytes() - startAllocatedBytes;
+        phaseStats.add(nanos, allocatedBytes);
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        if (THREAD_MX_BEAN == null) {
+            return -1;
+        }
+        return THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadMXBean() {
+        try {
+            java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+            if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean hotSpotThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+                if (hotSpotThreadMXBean.isThreadAllocatedMemorySupported() && hotSpotThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+                    return hotSpotThreadMXBean;
+                }
+            }
+        } catch (LinkageError e) {
+            // com.sun.management is not there on every JVM
+        }
+        return null;
+    }
+}
@@ -67,6 +67,12 @@ public class PicoCliValidation {
         }
     }
 
+    public static void notNegative(CommandSpec spec, String optionName, int value) {
+        if (value < 0) {
+            throw new CommandLine.ParameterException(spec.commandLine(), String.format("Invalid value for option '%s': %d is negative.", optionName, value));
+        }
+    }
+
     public static void fileDoesNotExist(CommandSpec spec, Path... paths) {
         for (Path path : paths) {
             if (Files.exists(path)) {
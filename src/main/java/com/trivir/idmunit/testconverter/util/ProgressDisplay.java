@@ -0,0 +1,283 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.util;
+
+import org.fusesource.jansi.Ansi;
+import org.fusesource.jansi.AnsiPrintStream;
+import org.fusesource.jansi.AnsiType;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shows the progress of a run, which may convert several workbooks at the same time. Workers only update counters,
+ * and a background thread redraws the display at most a given number of times per second: one line per workbook being
+ * converted, followed by the totals of the run with the sheets/s and MB/s rates and the estimated time left.
+ * <p>
+ * When the console is not a terminal, as in CI, nothing is redrawn. The messages of finished workbooks are printed as
+ * plain lines, together with the totals line every {@value #PLAIN_INTERVAL_SECONDS} seconds.
+ */
+public class ProgressDisplay implements AutoCloseable {
+
+    public static final int DEFAULT_UPDATES_PER_SECOND = 4;
+    public static final long PLAIN_INTERVAL_SECONDS = 10;
+
+    private static final int BAR_LENGTH = 20;
+    private static final int DEFAULT_TERMINAL_WIDTH = 80;
+    private static final double BYTES_PER_MB = 1_000_000;
+
+    private final PrintWriter writer;
+    private final boolean interactive;
+    private final int terminalWidth;
+    private final ScheduledExecutorService executor;
+    private final long startNanos = System.nanoTime();
+
+    // Guarded by this
+    private final List<Task> activeTasks = new ArrayList<>();
+    private final List<String> pendingMessages = new ArrayList<>();
+    private int totalWorkbooks;
+    private long totalBytes;
+    private int finishedWorkbooks;
+    private int finishedSheets;
+    private long finishedBytes;
+    private boolean started;
+    private boolean closed;
+    private int numLinesDrawn;
+    private String lastBlock = "";
+    private long lastPlainTotalsNanos = startNanos;
+
+    /**
+     * @param writer  where the progress is written
+     * @param console the stream behind the writer, used to find out whether it is a terminal
+     */
+    public ProgressDisplay(PrintWriter writer, PrintStream console, int updatesPerSecond) {
+        this.writer = writer;
+        this.interactive = isTerminal(console);
+        this.terminalWidth = getTerminalWidth(console);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "progress-display");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = 1000 / Math.max(1, updatesPerSecond);
+        executor.scheduleAtFixedRate(() -> render(false), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds workbooks to the totals used for the estimated time left. Commands that share the display each add their own.
+     */
+    public synchronized void addWork(int numWorkbooks, long numBytes) {
+        totalWorkbooks += numWorkbooks;
+        totalBytes += numBytes;
+    }
+
+    /**
+     * Starts showing a workbook. The display stays silent until the first workbook starts, so that it never draws over
+     * questions asked while the run is being prepared.
+     */
+    public synchronized Task start(String name, long numBytes) {
+        Task task = new Task(name, numBytes);
+        activeTasks.add(task);
+        started = true;
+        return task;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        render(true);
+    }
+
+    private synchronized void finish(Task task, String message) {
+        if (!activeTasks.remove(task)) {
+            return;
+        }
+        finishedWorkbooks++;
+        finishedSheets += task.numSheetsDone;
+        finishedBytes += task.numBytes;
+        if (message != null) {
+            pendingMessages.add(message);
+        }
+    }
+
+    private synchronized void render(boolean last) {
+        if (!started || closed) {
+            return;
+        }
+        closed = last;
+        long nowNanos = System.nanoTime();
+        String block = "";
+        if (interactive && !last) {
+            List<String> lines = new ArrayList<>();
+            activeTasks.forEach(x -> lines.add(truncate(formatTask(x))));
+            lines.add(truncate(formatTotals(nowNanos, false)));
+            block = String.join(System.lineSeparator(), lines);
+            if (pendingMessages.isEmpty() && block.equals(lastBlock)) {
+                return;
+            }
+        }
+        StringBuilder output = new StringBuilder();
+        if (interactive && numLinesDrawn > 0) {
+            // Move back to the start of the previous block and erase it
+            output.append('\r');
+            if (numLinesDrawn > 1) {
+                output.append(Ansi.ansi().cursorUp(numLinesDrawn - 1));
+            }
+            output.append(Ansi.ansi().eraseScreen(Ansi.Erase.FORWARD));
+        }
+        for (String message : pendingMessages) {
+            output.append(message).append(System.lineSeparator());
+        }
+        pendingMessages.clear();
+        if (last) {
+            output.append(formatTotals(nowNanos, true)).append(System.lineSeparator());
+        } else if (interactive) {
+            output.append(block);
+            lastBlock = block;
+            numLinesDrawn = block.split(System.lineSeparator(), -1).length;
+        } else if (nowNanos - lastPlainTotalsNanos >= TimeUnit.SECONDS.toNanos(PLAIN_INTERVAL_SECONDS)) {
+            output.append(formatTotals(nowNanos, false)).append(System.lineSeparator());
+            lastPlainTotalsNanos = nowNanos;
+        }
+        if (output.length() > 0) {
+            writer.print(output);
+            writer.flush();
+        }
+    }
+
+    private String formatTask(Task task) {
+        StringBuilder line = new StringBuilder("[");
+        int numSheets = task.numSheets;
+        int numCharacters = numSheets <= 0 ? 0 : (int) ((long) BAR_LENGTH * task.numSheetsDone / numSheets);
+        for (int i = 0; i < BAR_LENGTH; i++) {
+            line.append(i < numCharacters - 1 ? '=' : i == numCharacters - 1 ? '>' : ' ');
+        }
+        line.append("] ").append(task.name);
+        if (numSheets > 0) {
+            line.append("  ").append(task.numSheetsDone).append('/').append(numSheets).append(" sheets");
+        }
+        int numWarnings = task.numWarnings;
+        if (numWarnings > 0) {
+            line.append("  ").append(numWarnings).append(numWarnings == 1 ? " warning" : " warnings");
+        }
+        return line.toString();
+    }
+
+    private String formatTotals(long nowNanos, boolean last) {
+        int numSheetsDone = finishedSheets;
+        double numBytesDone = finishedBytes;
+        for (Task task : activeTasks) {
+            numSheetsDone += task.numSheetsDone;
+            if (task.numSheets > 0) {
+                numBytesDone += (double) task.numBytes * task.numSheetsDone / task.numSheets;
+            }
+        }
+        double seconds = Math.max(1, nowNanos - startNanos) / 1e9;
+        double bytesPerSecond = numBytesDone / seconds;
+        String rates = String.format(Locale.ROOT, "%d sheets, %.1f sheets/s, %.1f MB/s",
+            numSheetsDone, numSheetsDone / seconds, bytesPerSecond / BYTES_PER_MB);
+        if (last) {
+            return String.format("%d/%d workbooks, %s, in %s", finishedWorkbooks, totalWorkbooks, rates, formatDuration(seconds));
+        }
+        String eta = bytesPerSecond > 0 ? formatDuration(Math.max(0, totalBytes - numBytesDone) / bytesPerSecond) : "--:--";
+        return String.format("%d/%d workbooks, %s, ETA %s", finishedWorkbooks, totalWorkbooks, rates, eta);
+    }
+
+    private String truncate(String line) {
+        return line.length() < terminalWidth ? line : line.substring(0, terminalWidth - 1);
+    }
+
+    private static String formatDuration(double seconds) {
+        long totalSeconds = (long) Math.ceil(seconds);
+        if (totalSeconds >= 3600) {
+            return String.format("%d:%02d:%02d", totalSeconds / 3600, totalSeconds / 60 % 60, totalSeconds % 60);
+        }
+        return String.format("%d:%02d", totalSeconds / 60, totalSeconds % 60);
+    }
+
+    private static boolean isTerminal(PrintStream console) {
+        if (!(console instanceof AnsiPrintStream)) {
+            return false;
+        }
+        AnsiType type = ((AnsiPrintStream) console).getType();
+        return type != AnsiType.Redirected && type != AnsiType.Unsupported;
+    }
+
+    private static int getTerminalWidth(PrintStream console) {
+        int width = console instanceof AnsiPrintStream ? ((AnsiPrintStream) console).getTerminalWidth() : 0;
+        return width > 0 ? width : DEFAULT_TERMINAL_WIDTH;
+    }
+
+    /**
+     * The progress of one workbook. Only the worker converting it may update it.
+     */
+    public class Task implements AutoCloseable {
+
+        private final String name;
+        private final long numBytes;
+        private volatile int numSheets;
+        private volatile int numSheetsDone;
+        private volatile int numWarnings;
+
+        private Task(String name, long numBytes) {
+            this.name = name;
+            this.numBytes = numBytes;
+        }
+
+        public void setNumSheets(int numSheets) {
+            this.numSheets = numSheets;
+        }
+
+        public void step(int numNewWarnings) {
+            numSheetsDone++;
+            numWarnings += numNewWarnings;
+        }
+
+        /**
+         * Stops showing the workbook, and prints the message as a permanent line above the progress.
+         */
+        public void finish(String message) {
+            ProgressDisplay.this.finish(this, message);
+        }
+
+        /**
+         * Stops showing the workbook without a message, if it was not finished already.
+         */
+        @Override
+        public void close() {
+            finish(null);
+        }
+    }
+}
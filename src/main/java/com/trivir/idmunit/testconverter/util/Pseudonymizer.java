@@ -0,0 +1,94 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.util;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Replaces strings with pseudonyms of the same length and shape: every letter is replaced by a letter of the same case,
+ * every digit by a digit, and everything else, such as spaces, punctuation and separators, is kept. The same string
+ * always gets the same pseudonym for the same key, and without the key a pseudonym cannot be traced back to the
+ * original.
+ */
+public class Pseudonymizer {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final Mac mac;
+    private final Map<String, String> pseudonyms = new HashMap<>();
+
+    public Pseudonymizer(byte[] key) {
+        try {
+            mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(key, HMAC_ALGORITHM));
+        } catch (GeneralSecurityException e) {
+            // Every Java platform is required to support HmacSHA256
+            throw new RuntimeException(e);
+        }
+    }
+
+    public String pseudonym(String value) {
+        return pseudonyms.computeIfAbsent(value, this::createPseudonym);
+    }
+
+    private String createPseudonym(String value) {
+        char[] pseudonym = value.toCharArray();
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        byte[] randomBytes = new byte[0];
+        int numRandomBytesUsed = 0;
+        int block = 0;
+        for (int i = 0; i < pseudonym.length; i++) {
+            char c = pseudonym[i];
+            if (!Character.isLetterOrDigit(c)) {
+                continue;
+            }
+            if (numRandomBytesUsed == randomBytes.length) {
+                // Each block of random bytes is the HMAC of the value and the block number
+                mac.update(ByteBuffer.allocate(4).putInt(block++).array());
+                randomBytes = mac.doFinal(valueBytes);
+                numRandomBytesUsed = 0;
+            }
+            int random = randomBytes[numRandomBytesUsed++] & 0xff;
+            if (Character.isDigit(c)) {
+                pseudonym[i] = (char) ('0' + random % 10);
+            } else if (Character.isUpperCase(c)) {
+                pseudonym[i] = (char) ('A' + random % 26);
+            } else {
+                pseudonym[i] = (char) ('a' + random % 26);
+            }
+        }
+        return new String(pseudonym);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * IdMUnit - Automated Testing Framework for Identity Management Solutions
+ * Copyright (c) 2005-2023 TriVir, LLC
+ *
+ * This program is licensed under the terms of the GNU General Public License
+ * Version 2 (the "License") as published by the Free Software Foundation, and
+ * the TriVir Licensing Policies (the "License Policies").  A copy of the License
+ * and the Policies were distributed with this program.
+ *
+ * The License is available at:
+ * http://www.gnu.org/copyleft/gpl.html
+ *
+ * The Policies are available at:
+ * http://www.idmunit.org/licensing/index.html
+ *
+ * Unless required by applicable law or agreed to in writing, this program is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied.  See the License and the Policies
+ * for specific language governing the use of this program.
+ *
+ * www.TriVir.com
+ * TriVir LLC
+ * 13890 Braddock Road
+ * Suite 310
+ * Centreville, Virginia 20121
+ *
+ */
+
+package com.trivir.idmunit.testconverter.util;
+
+import lombok.Value;
+import picocli.CommandLine;
+
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * One slice ({@code k/n}) of a work list that is split across several machines.
+ * <p>
+ * Items are assigned to shards by weight, largest first, each going to the shard with the least total weight so far.
+ * The assignment only depends on the weights and names of the items, so every node computes the same split.
+ */
+@Value
+public class Shard {
+
+    private static final String PARTIAL_FILE_FORMAT = "%s.shard-%d-of-%d%s";
+
+    // 1-based, as given on the command line
+    int index;
+    int count;
+
+    public static Shard parse(String value) {
+        String[] parts = value.trim().split("/");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException(String.format("Invalid shard '%s': expected the form k/n.", value));
+        }
+        int index;
+        int count;
+        try {
+            index = Integer.parseInt(parts[0].trim());
+            count = Integer.parseInt(parts[1].trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Invalid shard '%s': k and n must be whole numbers.", value));
+        }
+        if (count < 1 || index < 1 || index > count) {
+            throw new IllegalArgumentException(String.format("Invalid shard '%s': k must be between 1 and n.", value));
+        }
+        return new Shard(index, count);
+    }
+
+    public <T> List<T> select(List<T> items, ToLongFunction<T> weight) {
+        List<T> ordered = items.stream()
+            .sorted(Comparator.comparingLong(weight).reversed().thenComparing(Object::toString))
+            .collect(Collectors.toList());
+        long[] loads = new long[count];
+        Set<T> selected = new HashSet<>();
+        for (T item : ordered) {
+            int lightest = 0;
+            for (int i = 1; i < count; i++) {
+                if (loads[i] < loads[lightest]) {
+                    lightest = i;
+                }
+            }
+            loads[lightest] += weight.applyAsLong(item);
+            if (lightest == index - 1) {
+                selected.add(item);
+            }
+        }
+        // Keep the caller's ordering within the shard
+        return items.stream()
+            .filter(selected::contains)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the per-shard variant of a file, e.g. {@code test-converter.log} becomes
+     * {@code test-converter.shard-2-of-4.log}, and with an extension of {@code .report.json},
+     * {@code test-converter.shard-2-of-4.report.json}.
+     */
+    public Path partialFile(Path path, String extension) {
+        return path.resolveSibling(String.format(PARTIAL_FILE_FORMAT, FilesUtils.stripExtension(path), index, count, extension));
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+
+    public static class Converter implements CommandLine.ITypeConverter<Shard> {
+        @Override
+        public Shard convert(String value) {
+            try {
+                return Shard.parse(value);
+            } catch (IllegalArgumentException e) {
+                throw new CommandLine.TypeConversionException(e.getMessage());
+            }
+        }
+    }
+}